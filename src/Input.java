@@ -1,7 +1,32 @@
 import java.awt.Component;
 import java.awt.Point;
 import java.awt.event.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Input is a utility class for providing easy access to all kinds of user input events
@@ -50,7 +75,17 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
      */
     public static final String NAME_SEPARATOR = "=";
 
-    private List<Key> keys = new ArrayList<Key>();
+    //flags in the header byte of a frame written by writeFrame
+    private static final int FRAME_PRESSED = 1;
+    private static final int FRAME_CLICKED = 2;
+    private static final int FRAME_MOUSE = 4;
+    private static final int FRAME_WHEEL = 8;
+    private static final int FRAME_RELEASED = 16;
+    //Keys clicked more than once or repeated by the system with their counts
+    private static final int FRAME_COUNTS = 32;
+
+    //copied on write so the event thread can dispatch while Keys are created on another thread
+    private List<Key> keys = new CopyOnWriteArrayList<Key>();
 
     private Key leftMouseButton;
     private Key rightMouseButton;
@@ -59,10 +94,113 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
     private int x;
     private int y;
 
+    //wheel rotation since the last tick and the rotation of the last tick
+    private int wheelRotation;
+    private int frameWheel;
+
+    private MotionPolicy motionPolicy = MotionPolicy.EVERY_EVENT;
+    //guards the work which is deferred to tick by MotionPolicy.LATEST
+    private final Object motionLock = new Object();
+    private boolean motionPending;
+    private boolean dragPending;
+    private int dragX;
+    private int dragY;
+    private long dragWhen;
+    //work which has to wait until motionLock is released, like publishing events, so a
+    //blocking subscriber never holds up the threads waiting for the lock
+    private final List<Runnable> deferred = new ArrayList<Runnable>();
+    private volatile boolean hasDeferred;
+
+    //mouse movement of the last tick
+    private int tickX;
+    private int tickY;
+    private int frameDeltaX;
+    private int frameDeltaY;
+
+    //the latest position for render time reads, written under a sequence which is odd while
+    //writing so the when and nanos always belong to the point
+    private final Object latchLock = new Object();
+    private volatile long latchSequence;
+    private volatile long latchedPoint;
+    private long latchedWhen;
+    private long latchedNanos;
+
+    //mouse position of the last written frame
+    private int sentX;
+    private int sentY;
+
+    //number of the last tick
+    private long frame;
+    private FrameHistory history;
+
+    //ids of the Keys clicked and released in the last frame
+    private int[] justPressed = new int[0];
+    private int justPressedCount;
+    private int[] justReleased = new int[0];
+    private int justReleasedCount;
+
+    //layout of the shared state file, all little endian
+    private static final int SHARED_MAGIC = 0x5041504A;
+    private static final int SHARED_VERSION = 1;
+    private static final int SHARED_MAGIC_OFFSET = 0;
+    private static final int SHARED_VERSION_OFFSET = 4;
+    //odd while the frame is being written
+    private static final int SHARED_SEQUENCE_OFFSET = 8;
+    private static final int SHARED_FRAME_OFFSET = 16;
+    private static final int SHARED_X_OFFSET = 24;
+    private static final int SHARED_Y_OFFSET = 28;
+    private static final int SHARED_WHEEL_OFFSET = 32;
+    private static final int SHARED_KEY_COUNT_OFFSET = 36;
+    private static final int SHARED_MAX_KEYS_OFFSET = 40;
+    private static final int SHARED_NAMES_LENGTH_OFFSET = 44;
+    //followed by the pressed and clicked bitsets and the names separated by newlines
+    private static final int SHARED_BITS_OFFSET = 48;
+    private static final int SHARED_NAME_BYTES = 32;
+    private static final VarHandle SHARED_LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    //times a reader retries while a frame is being written before giving up on this update
+    private static final int SHARED_READ_ATTEMPTS = 1024;
+
+    private volatile SharedStatePublisher publisher;
+
+    //regions are indexed in cells of 2^HIT_CELL_SHIFT pixels, hashed into HIT_BUCKETS lists
+    private static final int HIT_CELL_SHIFT = 6;
+    private static final int HIT_BUCKETS = 1024;
+    private final List<List<HitRegion>> hitBuckets = new ArrayList<List<HitRegion>>(HIT_BUCKETS);
+    private int hitRegions;
+    private int hitOrder;
+    private volatile HitRegion hovered;
+    private HitRegion leftTarget;
+    private HitRegion rightTarget;
+
+    private final Key[] gestureKeys = new Key[Gesture.values().length];
+    private final GestureTracker gestures = new GestureTracker();
+
+    //instructions of compiled actions
+    private static final int OP_PRESSED = 0;
+    private static final int OP_CLICKED = 1;
+    private static final int OP_HELD = 2;
+    private static final int OP_WITHIN = 3;
+    private static final int OP_NOT = 4;
+    private static final int OP_AND = 5;
+    private static final int OP_OR = 6;
+
+    private List<Action> actions = new ArrayList<Action>();
+    private boolean[] actionStack = new boolean[0];
+
     boolean anyKeyOn = false;
     private AnyInput currentAnyInput;
 
-    private List<WheelListener> wheelListeners = new ArrayList<WheelListener>();
+    //copied on write so listeners can remove themselves while being called
+    private List<WheelListener> wheelListeners = new CopyOnWriteArrayList<WheelListener>();
+
+    private List<BindingWatcher> bindingWatchers = new CopyOnWriteArrayList<BindingWatcher>();
+    //time without new events of a bindings file before it is reloaded
+    private static final long BINDINGS_SETTLE_MILLIS = 100;
+
+    private List<EventPublisher> publishers = new CopyOnWriteArrayList<EventPublisher>();
+    //events are only created while someone is subscribed
+    private final AtomicInteger liveSubscriptions = new AtomicInteger();
 
     private List<KeyToggle> keyToggles = new ArrayList<KeyToggle>();//todo
 
@@ -101,9 +239,8 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
             leftMouseButton =
                     new Key(LEFT_MOUSE_BUTTON_NAME, asInputtableList(new MouseButtonInput(1)),
                             false);
-            rightMouseButton =
-                    new Key(RIGHT_MOUSE_BUTTON_NAME, asInputtableList(new MouseButtonInput(1)),
-                            false);
+            rightMouseButton = new Key(RIGHT_MOUSE_BUTTON_NAME,
+                    asInputtableList(new MouseButtonInput(MouseEvent.BUTTON3)), false);
         }
     }
 
@@ -482,6 +619,64 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
         return null;
     }
 
+    /**
+     * Get the Key with the specified id
+     * @param id the id of the Key
+     * @return the Key with that id
+     * @throws IndexOutOfBoundsException if there is no Key with that id
+     * @see Key#getId()
+     */
+    public Key getKeyById(int id) {
+        return keys.get(id);
+    }
+
+    /**
+     * Get the amount of Keys which were clicked in the last frame
+     * <p>
+     *     Together with {@link #getJustPressed(int)} this allows going over only the Keys which
+     *     changed instead of checking every Key
+     * </p>
+     * @return the amount of Keys clicked
+     */
+    public int getJustPressedCount() {
+        return justPressedCount;
+    }
+
+    /**
+     * Get the id of a Key which was clicked in the last frame
+     * @param index the index in the list, from 0 to {@link #getJustPressedCount()}
+     * @return the id of the Key
+     * @see #getKeyById(int)
+     */
+    public int getJustPressed(int index) {
+        if(index >= justPressedCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + justPressedCount);
+        }
+        return justPressed[index];
+    }
+
+    /**
+     * Get the amount of Keys which were released in the last frame
+     * @return the amount of Keys released
+     * @see #getJustPressedCount()
+     */
+    public int getJustReleasedCount() {
+        return justReleasedCount;
+    }
+
+    /**
+     * Get the id of a Key which was released in the last frame
+     * @param index the index in the list, from 0 to {@link #getJustReleasedCount()}
+     * @return the id of the Key
+     * @see #getKeyById(int)
+     */
+    public int getJustReleased(int index) {
+        if(index >= justReleasedCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + justReleasedCount);
+        }
+        return justReleased[index];
+    }
+
     /**
      * Tick the Input
      * This is used to check whether a Key is clicked
@@ -489,9 +684,517 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
      *
      */
     public void tick() {
+        for(BindingWatcher watcher : bindingWatchers) {
+            watcher.apply();
+        }
+        synchronized(motionLock) {
+            flushMotion();
+            frameWheel = wheelRotation;
+            wheelRotation = 0;
+        }
+        runDeferred();
+        if(motionPolicy == MotionPolicy.LATEST && frameWheel != 0) {
+            for(WheelListener list : wheelListeners) {
+                list.onScroll(frameWheel);
+            }
+        }
         for(Key key : keys) {
             key.tick();
         }
+        for(int i = 0, size = actions.size(); i < size; i++) {
+            actions.get(i).evaluate();
+        }
+        int px = x;
+        int py = y;
+        frameDeltaX = px - tickX;
+        frameDeltaY = py - tickY;
+        tickX = px;
+        tickY = py;
+        endFrame();
+    }
+
+    /**
+     * Get the horizontal movement of the mouse during the last tick
+     * @return the movement in pixels
+     */
+    public int getMouseDeltaX() {
+        return frameDeltaX;
+    }
+
+    /**
+     * Get the vertical movement of the mouse during the last tick
+     * @return the movement in pixels
+     */
+    public int getMouseDeltaY() {
+        return frameDeltaY;
+    }
+
+    /**
+     * Set how mouse motion and wheel events are handled
+     * @param policy the MotionPolicy to use
+     */
+    public void setMotionPolicy(MotionPolicy policy) {
+        synchronized(motionLock) {
+            flushMotion();
+            motionPolicy = policy;
+        }
+        runDeferred();
+    }
+
+    public MotionPolicy getMotionPolicy() {
+        return motionPolicy;
+    }
+
+    /**
+     * The ways mouse motion and wheel events can be handled
+     * @see #setMotionPolicy(MotionPolicy)
+     */
+    public enum MotionPolicy {
+        /**
+         * Every motion event updates the hovered {@link HitRegion} and gestures and every wheel
+         * event is passed to the {@link WheelListener}s
+         */
+        EVERY_EVENT,
+        /**
+         * Only the latest position of a tick updates the hovered {@link HitRegion} and gestures,
+         * {@link WheelListener}s get the total rotation once per tick.
+         * The position of the mouse itself is still updated on every event and button and key
+         * transitions are never merged, pending motion is handled before them.
+         * <p>
+         *     The pending motion is handled by the thread calling {@link #tick()}, so hover
+         *     changes of {@link HitListener}s, gesture Keys and {@link WheelListener}s are called
+         *     on that thread. All hit region and gesture state is guarded by one lock, so regions
+         *     can still be changed from any thread.
+         * </p>
+         */
+        LATEST
+    }
+
+    //must hold motionLock
+    private void flushMotion() {
+        if(!motionPending) {
+            return;
+        }
+        motionPending = false;
+        if(dragPending) {
+            dragPending = false;
+            gestures.sample(dragX, dragY, dragWhen);
+        }
+        if(hitRegions > 0) {
+            updateHover();
+        }
+    }
+
+    //must hold motionLock
+    private void defer(Runnable task) {
+        deferred.add(task);
+        hasDeferred = true;
+    }
+
+    //runs the deferred work, only when the outermost motionLock is released
+    private void runDeferred() {
+        if(!hasDeferred || Thread.holdsLock(motionLock)) {
+            return;
+        }
+        Runnable[] tasks;
+        synchronized(motionLock) {
+            tasks = deferred.toArray(new Runnable[deferred.size()]);
+            deferred.clear();
+            hasDeferred = false;
+        }
+        for(Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    private void onMotion(MouseEvent event, boolean drag) {
+        latch(event.getX(), event.getY(), event.getWhen());
+        if(liveSubscriptions.get() > 0) {
+            publish(new Event(EventType.MOUSE_MOVE, null, event.getX(), event.getY(), 0,
+                    event.getWhen()));
+        }
+        if(motionPolicy == MotionPolicy.EVERY_EVENT) {
+            synchronized(motionLock) {
+                movePoint(event.getX(), event.getY());
+                if(drag) {
+                    gestures.sample(event.getX(), event.getY(), event.getWhen());
+                }
+            }
+            runDeferred();
+            return;
+        }
+        synchronized(motionLock) {
+            x = event.getX();
+            y = event.getY();
+            motionPending = true;
+            if(drag) {
+                dragPending = true;
+                dragX = x;
+                dragY = y;
+                dragWhen = event.getWhen();
+            }
+        }
+    }
+
+    private void endFrame() {
+        frame++;
+        int size = keys.size();
+        if(justPressed.length < size) {
+            justPressed = new int[size];
+            justReleased = new int[size];
+        }
+        justPressedCount = 0;
+        justReleasedCount = 0;
+        for(int i = 0; i < size; i++) {
+            Key key = keys.get(i);
+            if(key.clicked) {
+                justPressed[justPressedCount++] = i;
+            }
+            if(key.released) {
+                justReleased[justReleasedCount++] = i;
+            }
+        }
+        if(history != null) {
+            history.recordTick();
+        }
+        SharedStatePublisher current = publisher;
+        if(current != null) {
+            current.publish();
+        }
+    }
+
+    /**
+     * Publish the state of every frame into a memory mapped file
+     * <p>
+     *     Other processes can read the file without locking, for example with a
+     *     {@link SharedStateReader}. The file starts with a header of little endian values: the
+     *     magic {@code 0x5041504A} and version at 0 and 4, a sequence number at 8 which is odd
+     *     while a frame is written, the frame number at 16, mouse x, y and wheel rotation at 24,
+     *     28 and 32, the amount of Keys at 36, the maximum amount of Keys at 40 and the length of
+     *     the names at 44. After that follow the pressed and clicked bitsets of the Keys as longs
+     *     and the names of the Keys separated by newlines.
+     * </p>
+     * <p>
+     *     The state is written by the thread calling {@link #tick()}, starting with the next
+     *     tick. An existing file is overwritten in place and never made shorter, so readers which
+     *     still have it mapped keep working.
+     * </p>
+     * @param file the file to publish to, it is created or overwritten
+     * @param maxKeys the maximum amount of Keys to publish
+     * @throws IOException if the file could not be mapped
+     */
+    public void publishState(File file, int maxKeys) throws IOException {
+        stopPublishing();
+        publisher = new SharedStatePublisher(file, maxKeys);
+    }
+
+    /**
+     * Stop publishing the state to a file
+     * @throws IOException if the file could not be closed
+     * @see #publishState(File, int)
+     */
+    public void stopPublishing() throws IOException {
+        SharedStatePublisher old = publisher;
+        if(old != null) {
+            publisher = null;
+            old.close();
+        }
+    }
+
+    /**
+     * Get the number of the last frame
+     * <p>
+     *     Every {@link #tick()} or {@link #readFrame(ByteBuffer)} starts a new frame, the first one
+     *     being 1
+     * </p>
+     * @return the frame number
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Start keeping the state of the last frames
+     * <p>
+     *     From now on every frame is recorded into the {@link FrameHistory} returned, replacing
+     *     any history kept before
+     * </p>
+     * @param capacity the amount of frames to keep
+     * @return the FrameHistory which records the frames
+     */
+    public FrameHistory enableHistory(int capacity) {
+        history = new FrameHistory(capacity);
+        return history;
+    }
+
+    /**
+     * Get the history of the last frames
+     * @return the FrameHistory or {@code null} if it is not enabled
+     * @see #enableHistory(int)
+     */
+    public FrameHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Get the amount the mouse wheel was rotated during the last tick
+     * @return the rotation negative is up positive is down
+     */
+    public int getWheelRotation() {
+        return frameWheel;
+    }
+
+    /**
+     * Write the state of the last tick as a compact delta to the previous written frame
+     * <p>
+     *     Only Keys which changed their pressed state since the previous frame are sent together
+     *     with the clicked and released Keys, the click and repeat counts above the usual and
+     *     the mouse and wheel movement. Call this after
+     *     {@link #tick()} and read it on the other side with {@link #readFrame(ByteBuffer)}. Both
+     *     sides need to have the same Keys created in the same order.
+     * </p>
+     * @param out the buffer to write the frame to
+     * @throws BufferOverflowException if the frame does not fit in the buffer, nothing is
+     *                                 written then and the next call sends the same changes
+     */
+    public void writeFrame(ByteBuffer out) {
+        int size = keys.size();
+        int px = x;
+        int py = y;
+        int flags = 0;
+        int counted = 0;
+        int countBytes = 0;
+        for(int i = 0; i < size; i++) {
+            Key key = keys.get(i);
+            if(key.clicks > 1 || key.frameRepeats > 0) {
+                flags |= FRAME_COUNTS;
+                counted++;
+                countBytes += varIntSize(i) + varIntSize(key.clicks) +
+                        varIntSize(key.frameRepeats);
+            }
+            if(key.pressed != key.sentPressed) {
+                flags |= FRAME_PRESSED;
+            }
+            if(key.clicked) {
+                flags |= FRAME_CLICKED;
+            }
+            if(key.released) {
+                flags |= FRAME_RELEASED;
+            }
+        }
+        if(px != sentX || py != sentY) {
+            flags |= FRAME_MOUSE;
+        }
+        if(frameWheel != 0) {
+            flags |= FRAME_WHEEL;
+        }
+        //check the whole frame fits before sending anything, a half written frame would leave
+        //the sent state ahead of the other side
+        int bytes = (size + 7) >> 3;
+        int bitsets = Integer.bitCount(flags & (FRAME_PRESSED | FRAME_CLICKED | FRAME_RELEASED));
+        int length = 1 + bitsets * (varIntSize(bytes) + bytes);
+        if((flags & FRAME_COUNTS) != 0) {
+            length += varIntSize(counted) + countBytes;
+        }
+        if((flags & FRAME_MOUSE) != 0) {
+            length += varIntSize(zigZag(px - sentX)) + varIntSize(zigZag(py - sentY));
+        }
+        if((flags & FRAME_WHEEL) != 0) {
+            length += varIntSize(zigZag(frameWheel));
+        }
+        if(out.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        out.put((byte) flags);
+        if((flags & FRAME_PRESSED) != 0) {
+            putVarInt(out, bytes);
+            int bits = 0;
+            for(int i = 0; i < size; i++) {
+                Key key = keys.get(i);
+                //read once, the event thread might change it in between
+                boolean pressed = key.pressed;
+                if(pressed != key.sentPressed) {
+                    key.sentPressed = pressed;
+                    bits |= 1 << (i & 7);
+                }
+                if((i & 7) == 7 || i == size - 1) {
+                    out.put((byte) bits);
+                    bits = 0;
+                }
+            }
+        }
+        if((flags & FRAME_CLICKED) != 0) {
+            putVarInt(out, bytes);
+            int bits = 0;
+            for(int i = 0; i < size; i++) {
+                if(keys.get(i).clicked) {
+                    bits |= 1 << (i & 7);
+                }
+                if((i & 7) == 7 || i == size - 1) {
+                    out.put((byte) bits);
+                    bits = 0;
+                }
+            }
+        }
+        //a Key pressed and released within a frame does not change its pressed state
+        if((flags & FRAME_RELEASED) != 0) {
+            putVarInt(out, bytes);
+            int bits = 0;
+            for(int i = 0; i < size; i++) {
+                if(keys.get(i).released) {
+                    bits |= 1 << (i & 7);
+                }
+                if((i & 7) == 7 || i == size - 1) {
+                    out.put((byte) bits);
+                    bits = 0;
+                }
+            }
+        }
+        if((flags & FRAME_COUNTS) != 0) {
+            putVarInt(out, counted);
+            for(int i = 0; i < size; i++) {
+                Key key = keys.get(i);
+                if(key.clicks > 1 || key.frameRepeats > 0) {
+                    putVarInt(out, i);
+                    putVarInt(out, key.clicks);
+                    putVarInt(out, key.frameRepeats);
+                }
+            }
+        }
+        if((flags & FRAME_MOUSE) != 0) {
+            putVarInt(out, zigZag(px - sentX));
+            putVarInt(out, zigZag(py - sentY));
+            sentX = px;
+            sentY = py;
+        }
+        if((flags & FRAME_WHEEL) != 0) {
+            putVarInt(out, zigZag(frameWheel));
+        }
+    }
+
+    /**
+     * Apply a frame written by {@link #writeFrame(ByteBuffer)} to this Input
+     * <p>
+     *     This is meant for a remote Input created with a {@code null} component, call this
+     *     instead of {@link #tick()} for every received frame.
+     *     Bits for Keys which this Input does not have are ignored.
+     *     How long Keys are held and {@link Key#isRepeated()} follow from the frames, using the
+     *     repeat rates set on this Input.
+     * </p>
+     * @param in the buffer to read the frame from
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a whole frame
+     */
+    public void readFrame(ByteBuffer in) {
+        int size = keys.size();
+        int flags = in.get();
+        for(int i = 0; i < size; i++) {
+            Key key = keys.get(i);
+            key.clicked = false;
+            key.clicks = 0;
+            key.frameRepeats = 0;
+            key.released = false;
+        }
+        if((flags & FRAME_PRESSED) != 0) {
+            int length = getVarInt(in);
+            for(int i = 0; i < length; i++) {
+                int bits = in.get() & 0xFF;
+                for(int id = i << 3; bits != 0; id++, bits >>>= 1) {
+                    if((bits & 1) != 0 && id < size) {
+                        Key key = keys.get(id);
+                        key.pressed = !key.pressed;
+                    }
+                }
+            }
+        }
+        if((flags & FRAME_CLICKED) != 0) {
+            int length = getVarInt(in);
+            for(int i = 0; i < length; i++) {
+                int bits = in.get() & 0xFF;
+                for(int id = i << 3; bits != 0; id++, bits >>>= 1) {
+                    if((bits & 1) != 0 && id < size) {
+                        Key key = keys.get(id);
+                        key.clicked = true;
+                        key.clicks = 1;
+                    }
+                }
+            }
+        }
+        if((flags & FRAME_RELEASED) != 0) {
+            int length = getVarInt(in);
+            for(int i = 0; i < length; i++) {
+                int bits = in.get() & 0xFF;
+                for(int id = i << 3; bits != 0; id++, bits >>>= 1) {
+                    if((bits & 1) != 0 && id < size) {
+                        keys.get(id).released = true;
+                    }
+                }
+            }
+        }
+        if((flags & FRAME_COUNTS) != 0) {
+            int counted = getVarInt(in);
+            for(int i = 0; i < counted; i++) {
+                int id = getVarInt(in);
+                int clicks = getVarInt(in);
+                int repeats = getVarInt(in);
+                if(id < size) {
+                    Key key = keys.get(id);
+                    key.clicks = clicks;
+                    key.frameRepeats = repeats;
+                }
+            }
+        }
+        if((flags & FRAME_MOUSE) != 0) {
+            frameDeltaX = unZigZag(getVarInt(in));
+            frameDeltaY = unZigZag(getVarInt(in));
+            x += frameDeltaX;
+            y += frameDeltaY;
+            latch(x, y, System.currentTimeMillis());
+        } else {
+            frameDeltaX = 0;
+            frameDeltaY = 0;
+        }
+        frameWheel = (flags & FRAME_WHEEL) != 0 ? unZigZag(getVarInt(in)) : 0;
+        for(int i = 0; i < size; i++) {
+            keys.get(i).advance();
+        }
+        endFrame();
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarInt(ByteBuffer out, int value) {
+        while((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in frame");
     }
 
     @Override
@@ -500,9 +1203,19 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
 
     /**
      * Reset all the keys to a non pressed state
+     * <p>
+     *     Keys defined by an action are left alone, the next tick evaluates them from the reset
+     *     Keys so their release is reported like any other
+     * </p>
      */
     public void unPressAll() {
         for(Key key : keys) {
+            if(key.action) {
+                continue;
+            }
+            if(key.pressed) {
+                key.releases++;
+            }
             key.pressed = false;
             key.clicked = false;
         }
@@ -530,7 +1243,10 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
             for(UserInput input : key.inputs) {
                 if(input.getType() == InputType.KEY || input.getType() == InputType.ALL) {
                     if(input.onKeyPressed(event)) {
-                        key.toggle(state);
+                        if(state) {
+                            key.heldBy = input;
+                        }
+                        key.toggle(state, event.getWhen());
                     }
                 }
             }
@@ -548,8 +1264,8 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
         for(Key key : keys) {
             for(UserInput input : key.inputs) {
                 if(input.getType() == InputType.MOUSE_WHEEL || input.getType() == InputType.ALL) {
-                    if(input.onMousePressed(event)) {
-                        key.pressOnce();
+                    if(input.onWheelScrolled(event)) {
+                        key.pressOnce(event.getWhen());
                     }
                 }
             }
@@ -568,13 +1284,52 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
             for(UserInput input : key.inputs) {
                 if(input.getType() == InputType.MOUSE_BUTTON || input.getType() == InputType.ALL) {
                     if(input.onMousePressed(event)) {
-                        key.toggle(state);
+                        if(state) {
+                            key.heldBy = input;
+                        }
+                        key.toggle(state, event.getWhen());
+                        if(hitRegions > 0 &&
+                                (key == leftMouseButton || key == rightMouseButton)) {
+                            routeButton(key, state);
+                        }
                     }
                 }
             }
         }
     }
 
+    private void routeButton(Key button, boolean state) {
+        boolean left = button == leftMouseButton;
+        HitRegion target;
+        if(state) {
+            target = hovered;
+            if(left) {
+                leftTarget = target;
+            } else {
+                rightTarget = target;
+            }
+        } else {
+            //a release goes to the region which received the press
+            target = left ? leftTarget : rightTarget;
+            if(left) {
+                leftTarget = null;
+            } else {
+                rightTarget = null;
+            }
+        }
+        if(target != null) {
+            final HitListener listener = target.listener;
+            final Key key = button;
+            final boolean down = state;
+            defer(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onButton(key, down);
+                }
+            });
+        }
+    }
+
     /**
      * Add a {@link WheelListener}
      * @param list the WheelListener to add
@@ -593,48 +1348,80 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
 
     @Override
     public void mouseWheelMoved(MouseWheelEvent e) {
-        setPoint(e.getPoint());
-        for(WheelListener list : wheelListeners) {
-            list.onScroll(e.getWheelRotation());
+        if(liveSubscriptions.get() > 0) {
+            publish(new Event(EventType.WHEEL, null, e.getX(), e.getY(), e.getWheelRotation(),
+                    e.getWhen()));
+        }
+        synchronized(motionLock) {
+            flushMotion();
+            setPoint(e.getX(), e.getY(), e.getWhen());
+            wheelRotation += e.getWheelRotation();
+        }
+        runDeferred();
+        onMouseWheel(e);
+        if(motionPolicy == MotionPolicy.EVERY_EVENT) {
+            for(WheelListener list : wheelListeners) {
+                list.onScroll(e.getWheelRotation());
+            }
         }
     }
 
     @Override
     public void mouseDragged(MouseEvent e) {
-        setPoint(e.getPoint());
+        onMotion(e, true);
     }
 
     @Override
     public void mouseMoved(MouseEvent e) {
-        setPoint(e.getPoint());
+        onMotion(e, false);
     }
 
     @Override
     public void mouseClicked(MouseEvent e) {
-        setPoint(e.getPoint());
+        setPoint(e.getX(), e.getY(), e.getWhen());
     }
 
     @Override
     public void mousePressed(MouseEvent e) {
-        setPoint(e.getPoint());
-        onMouseButton(e, true);
+        synchronized(motionLock) {
+            flushMotion();
+            setPoint(e.getX(), e.getY(), e.getWhen());
+            onMouseButton(e, true);
+            gestures.start(e.getButton(), e.getX(), e.getY(), e.getWhen());
+        }
+        runDeferred();
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
-        setPoint(e.getPoint());
-        onMouseButton(e, false);
+        synchronized(motionLock) {
+            flushMotion();
+            setPoint(e.getX(), e.getY(), e.getWhen());
+            onMouseButton(e, false);
+            gestures.end(e.getButton(), e.getX(), e.getY(), e.getWhen());
+        }
+        runDeferred();
     }
 
     @Override
     public void mouseEntered(MouseEvent e) {
-        setPoint(e.getPoint());
+        synchronized(motionLock) {
+            flushMotion();
+            setPoint(e.getX(), e.getY(), e.getWhen());
+            updateHover();
+        }
+        runDeferred();
     }
 
     @Override
     public void mouseExited(MouseEvent e) {
-        setPoint(e.getPoint());
-        unPressAll();
+        synchronized(motionLock) {
+            flushMotion();
+            setPoint(e.getX(), e.getY(), e.getWhen());
+            unPressAll();
+            setHovered(null);
+        }
+        runDeferred();
     }
 
     public Point getPoint() {
@@ -645,77 +1432,702 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
         if(p == null) {
             return;
         }
-        x = p.x;
-        y = p.y;
+        setPoint(p.x, p.y, System.currentTimeMillis());
     }
 
-    public void setAnyInput(AnyInput event) {
-        currentAnyInput = event;
-        anyKeyOn = true;
+    private void setPoint(int px, int py, long when) {
+        synchronized(motionLock) {
+            if(movePoint(px, py)) {
+                latch(px, py, when);
+            }
+        }
+        runDeferred();
     }
 
-    /**
-     * Remove any anyKey events which are activated
-     */
-    public void closeAnyKey() {
-        currentAnyInput = null;
-        anyKeyOn = false;
+    private boolean movePoint(int px, int py) {
+        if(px == x && py == y) {
+            return false;
+        }
+        x = px;
+        y = py;
+        if(hitRegions > 0) {
+            updateHover();
+        }
+        return true;
+    }
+
+    private void latch(int px, int py, long when) {
+        synchronized(latchLock) {
+            long sequence = latchSequence;
+            latchSequence = sequence + 1;
+            VarHandle.storeStoreFence();
+            latchedWhen = when;
+            latchedNanos = System.nanoTime();
+            latchedPoint = (long) px << 32 | py & 0xFFFFFFFFL;
+            latchSequence = sequence + 2;
+        }
     }
 
     /**
-     * Add A KeyListener which listens to specific keys to toggle
-     * @param keyToggle the KeyToggleListener to call
-     * @param keys the Key to listen for
+     * Get the latest position of the mouse packed in a long
+     * <p>
+     *     This is updated on every mouse event, also when motion is coalesced, and can be read
+     *     from any thread without locking or seeing half an update. Read it right before drawing
+     *     the cursor to get the least delay.
+     * </p>
+     * @return the position, unpack it with {@link #pointX(long)} and {@link #pointY(long)}
      */
-    public void addKeyListener(KeyToggleListener keyToggle, Key... keys) {
-        keyToggles.add(new KeyToggle(keyToggle, keys));
+    public long getLatchedPoint() {
+        return latchedPoint;
     }
 
     /**
-     * Remove Keys from a KeyToggleListener
+     * Get the latest position of the mouse together with when it was received
      * <p>
-     *     If no keys are left the whole KeyToggleListener will be removed
+     *     The values are from the same event, use them to extrapolate the position
      * </p>
-     * @param keyToggle the KeyToggleListener to remove keys from
-     * @param keys the keys to remove
+     * @param sample an array of at least 3 to receive the packed position, the time of the
+     *               event in milliseconds like {@link System#currentTimeMillis()} and the time it
+     *               was received in {@link System#nanoTime()}
+     * @return the packed position
+     * @see #getLatchedPoint()
      */
-    public void removeKeyListener(KeyToggleListener keyToggle, Key... keys) {
-        for(Iterator<KeyToggle> iterator = keyToggles.iterator(); iterator.hasNext(); ) {
-            KeyToggle toggle = iterator.next();
-            if(toggle.listener == keyToggle) {
-                for(Key key : keys) {
-                    toggle.keys.remove(key);
-                }
-                if(toggle.keys.isEmpty()) {
-                    iterator.remove();
-                }
+    public long getLatchedSample(long[] sample) {
+        while(true) {
+            long sequence = latchSequence;
+            if((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long point = latchedPoint;
+            long when = latchedWhen;
+            long nanos = latchedNanos;
+            VarHandle.loadLoadFence();
+            if(latchSequence == sequence) {
+                sample[0] = point;
+                sample[1] = when;
+                sample[2] = nanos;
+                return point;
             }
         }
     }
 
     /**
-     * Remove a KeyToggleListener
-     * @param keyToggle the KeyToggleListener to remove
+     * Get the x from a packed position
+     * @param point the packed position
+     * @return the x
+     * @see #getLatchedPoint()
      */
-    public void removeKeyListener(KeyToggleListener keyToggle) {
-        keyToggles.remove(keyToggle);
+    public static int pointX(long point) {
+        return (int) (point >> 32);
     }
 
     /**
-     * A WheelListener will receive calls when the scroll wheel is moved
+     * Get the y from a packed position
+     * @param point the packed position
+     * @return the y
+     * @see #getLatchedPoint()
      */
-    public interface WheelListener {
-
-        /**
-         * gives amount of scrolls negative is up positve is down
-         * @param change the amount of movement from the mousewheel
-         */
-        void onScroll(int change);
-
+    public static int pointY(long point) {
+        return (int) point;
     }
 
-    private class KeyToggle {
-
+    /**
+     * Register a HitRegion so it will receive hover and mouse button events
+     * <p>
+     *     Only the topmost region under the mouse receives events. Regions can be added, moved
+     *     and removed from any thread. The {@link HitListener} is called on the thread which
+     *     dispatches the events of the component, or with {@link MotionPolicy#LATEST} on the
+     *     thread calling {@link #tick()} for hover changes from motion.
+     * </p>
+     * @param region the HitRegion to add
+     * @see #createHitRegion(HitListener, int, int, int, int, int)
+     */
+    public void addHitRegion(HitRegion region) {
+        synchronized(motionLock) {
+            if(region.registered) {
+                return;
+            }
+            if(hitBuckets.isEmpty()) {
+                for(int i = 0; i < HIT_BUCKETS; i++) {
+                    hitBuckets.add(new ArrayList<HitRegion>());
+                }
+            }
+            region.registered = true;
+            region.order = hitOrder++;
+            hitRegions++;
+            indexRegion(region, true);
+            updateHover();
+        }
+        runDeferred();
+    }
+
+    /**
+     * Remove a HitRegion
+     * <p>
+     *     If it is hovered it will receive a last hover event and releases of the mouse buttons
+     *     pressed on it will no longer be delivered
+     * </p>
+     * @param region the HitRegion to remove
+     */
+    public void removeHitRegion(HitRegion region) {
+        synchronized(motionLock) {
+            if(!region.registered) {
+                return;
+            }
+            indexRegion(region, false);
+            region.registered = false;
+            hitRegions--;
+            if(leftTarget == region) {
+                leftTarget = null;
+            }
+            if(rightTarget == region) {
+                rightTarget = null;
+            }
+            if(hovered == region) {
+                updateHover();
+            }
+        }
+        runDeferred();
+    }
+
+    /**
+     * Create and register a HitRegion
+     * @param listener the listener which receives the events
+     * @param x the x of the top left corner
+     * @param y the y of the top left corner
+     * @param width the width
+     * @param height the height
+     * @param layer the layer, regions in a higher layer are above regions in a lower layer
+     * @return the HitRegion created
+     */
+    public HitRegion createHitRegion(HitListener listener, int x, int y, int width, int height,
+                                     int layer) {
+        HitRegion region = new HitRegion(listener, x, y, width, height, layer);
+        addHitRegion(region);
+        return region;
+    }
+
+    /**
+     * Get the region under the mouse
+     * @return the topmost HitRegion under the mouse or {@code null} if there is none
+     */
+    public HitRegion getHoveredRegion() {
+        return hovered;
+    }
+
+    private static int hitBucket(int cellX, int cellY) {
+        int hash = cellX * 0x9E3779B1 + cellY * 0x85EBCA77;
+        return (hash ^ hash >>> 16) & (HIT_BUCKETS - 1);
+    }
+
+    private void indexRegion(HitRegion region, boolean add) {
+        if(region.width <= 0 || region.height <= 0) {
+            return;
+        }
+        int minX = region.x >> HIT_CELL_SHIFT;
+        int minY = region.y >> HIT_CELL_SHIFT;
+        int maxX = (region.x + region.width - 1) >> HIT_CELL_SHIFT;
+        int maxY = (region.y + region.height - 1) >> HIT_CELL_SHIFT;
+        for(int cellX = minX; cellX <= maxX; cellX++) {
+            for(int cellY = minY; cellY <= maxY; cellY++) {
+                List<HitRegion> bucket = hitBuckets.get(hitBucket(cellX, cellY));
+                if(add) {
+                    bucket.add(region);
+                } else {
+                    bucket.remove(region);
+                }
+            }
+        }
+    }
+
+    private void updateHover() {
+        if(hitRegions <= 0) {
+            setHovered(null);
+            return;
+        }
+        HitRegion top = null;
+        List<HitRegion> bucket =
+                hitBuckets.get(hitBucket(x >> HIT_CELL_SHIFT, y >> HIT_CELL_SHIFT));
+        for(int i = 0, size = bucket.size(); i < size; i++) {
+            HitRegion region = bucket.get(i);
+            if(region.contains(x, y) && (top == null || region.isAbove(top))) {
+                top = region;
+            }
+        }
+        setHovered(top);
+    }
+
+    //must hold motionLock, the listeners are called once it is released
+    private void setHovered(HitRegion region) {
+        if(region == hovered) {
+            return;
+        }
+        HitRegion old = hovered;
+        hovered = region;
+        if(old != null) {
+            deferHover(old.listener, false);
+        }
+        if(region != null) {
+            deferHover(region.listener, true);
+        }
+    }
+
+    private void deferHover(final HitListener listener, final boolean hover) {
+        defer(new Runnable() {
+            @Override
+            public void run() {
+                listener.onHover(hover);
+            }
+        });
+    }
+
+    public void setAnyInput(AnyInput event) {
+        currentAnyInput = event;
+        anyKeyOn = true;
+    }
+
+    /**
+     * Remove any anyKey events which are activated
+     */
+    public void closeAnyKey() {
+        currentAnyInput = null;
+        anyKeyOn = false;
+    }
+
+    /**
+     * Add A KeyListener which listens to specific keys to toggle
+     * @param keyToggle the KeyToggleListener to call
+     * @param keys the Key to listen for
+     */
+    public void addKeyListener(KeyToggleListener keyToggle, Key... keys) {
+        keyToggles.add(new KeyToggle(keyToggle, keys));
+    }
+
+    /**
+     * Remove Keys from a KeyToggleListener
+     * <p>
+     *     If no keys are left the whole KeyToggleListener will be removed
+     * </p>
+     * @param keyToggle the KeyToggleListener to remove keys from
+     * @param keys the keys to remove
+     */
+    public void removeKeyListener(KeyToggleListener keyToggle, Key... keys) {
+        for(Iterator<KeyToggle> iterator = keyToggles.iterator(); iterator.hasNext(); ) {
+            KeyToggle toggle = iterator.next();
+            if(toggle.listener == keyToggle) {
+                for(Key key : keys) {
+                    toggle.keys.remove(key);
+                }
+                if(toggle.keys.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a KeyToggleListener
+     * @param keyToggle the KeyToggleListener to remove
+     */
+    public void removeKeyListener(KeyToggleListener keyToggle) {
+        keyToggles.remove(keyToggle);
+    }
+
+    /**
+     * Get a Publisher of the press and release events of a Key
+     * <p>
+     *     Every subscriber gets its own buffer and receives its events on the executor, so slow
+     *     subscribers do not slow down the dispatching of events unless {@link Backpressure#BLOCK}
+     *     is used
+     * </p>
+     * @param key the Key to publish the events of
+     * @param executor the executor to call the subscribers on
+     * @param bufferSize the amount of events to buffer per subscriber
+     * @param backpressure what to do when the buffer of a subscriber is full
+     * @return the Publisher
+     */
+    public Flow.Publisher<Event> getKeyPublisher(Key key, Executor executor, int bufferSize,
+                                                 Backpressure backpressure) {
+        return addPublisher(new EventPublisher(key, null, executor, bufferSize, backpressure));
+    }
+
+    /**
+     * Get a Publisher of all events of a type
+     * @param type the type of events to publish
+     * @param executor the executor to call the subscribers on
+     * @param bufferSize the amount of events to buffer per subscriber
+     * @param backpressure what to do when the buffer of a subscriber is full
+     * @return the Publisher
+     * @see #getKeyPublisher(Key, Executor, int, Backpressure)
+     */
+    public Flow.Publisher<Event> getEventPublisher(EventType type, Executor executor,
+                                                   int bufferSize, Backpressure backpressure) {
+        return addPublisher(new EventPublisher(null, type, executor, bufferSize, backpressure));
+    }
+
+    /**
+     * Complete all Publishers, their subscribers receive onComplete after the buffered events
+     */
+    public void closePublishers() {
+        for(EventPublisher publisher : publishers) {
+            publisher.close();
+        }
+        publishers.clear();
+    }
+
+    private EventPublisher addPublisher(EventPublisher publisher) {
+        if(publisher.bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive:" +
+                    publisher.bufferSize);
+        }
+        publishers.add(publisher);
+        return publisher;
+    }
+
+    private void publish(final Event event) {
+        if(Thread.holdsLock(motionLock)) {
+            //Backpressure.BLOCK may wait for a subscriber, never do that holding the lock
+            defer(new Runnable() {
+                @Override
+                public void run() {
+                    publish(event);
+                }
+            });
+            return;
+        }
+        for(EventPublisher publisher : publishers) {
+            if(publisher.accepts(event)) {
+                publisher.offer(event);
+            }
+        }
+    }
+
+    /**
+     * The types of events which can be published
+     * @see #getEventPublisher(EventType, Executor, int, Backpressure)
+     */
+    public enum EventType {
+        /**
+         * A Key is pressed
+         */
+        KEY_PRESS,
+        /**
+         * A Key is released
+         */
+        KEY_RELEASE,
+        /**
+         * The mouse moved
+         */
+        MOUSE_MOVE,
+        /**
+         * The mouse wheel moved
+         */
+        WHEEL
+    }
+
+    /**
+     * What a Publisher does with a new event when the buffer of a subscriber is full
+     */
+    public enum Backpressure {
+        /**
+         * Drop the oldest buffered event
+         */
+        DROP_OLDEST,
+        /**
+         * Only keep the latest event, the buffer size is ignored
+         */
+        LATEST_ONLY,
+        /**
+         * Block the thread dispatching the event until there is room
+         * <p>
+         *     Events are never offered while the Input holds its locks, so a blocked thread does
+         *     not hold up {@link #tick()} or the other threads dispatching events
+         * </p>
+         */
+        BLOCK
+    }
+
+    /**
+     * An input event published to the subscribers of a Publisher
+     */
+    public static final class Event {
+        private final EventType type;
+        private final Key key;
+        private final int x;
+        private final int y;
+        private final int rotation;
+        private final long when;
+
+        private Event(EventType type, Key key, int x, int y, int rotation, long when) {
+            this.type = type;
+            this.key = key;
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+            this.when = when;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        /**
+         * Get the Key which was pressed or released
+         * @return the Key or {@code null} for mouse and wheel events
+         */
+        public Key getKey() {
+            return key;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWheelRotation() {
+            return rotation;
+        }
+
+        /**
+         * Get the time of the event
+         * @return the time in milliseconds like {@link System#currentTimeMillis()}
+         */
+        public long getWhen() {
+            return when;
+        }
+
+        @Override
+        public String toString() {
+            return type + (key != null ? " " + key.getName() : "") + " at " + x + "," + y +
+                    (type == EventType.WHEEL ? " rotation " + rotation : "");
+        }
+
+    }
+
+    private class EventPublisher implements Flow.Publisher<Event> {
+        private final Key key;
+        private final EventType type;
+        private final Executor executor;
+        private final int bufferSize;
+        private final Backpressure backpressure;
+        private final List<EventSubscription> subscriptions =
+                new CopyOnWriteArrayList<EventSubscription>();
+        private volatile boolean closed;
+
+        private EventPublisher(Key key, EventType type, Executor executor, int bufferSize,
+                               Backpressure backpressure) {
+            this.key = key;
+            this.type = type;
+            this.executor = executor;
+            this.bufferSize = bufferSize;
+            this.backpressure = backpressure;
+        }
+
+        private boolean accepts(Event event) {
+            return key != null ? event.key == key : event.type == type;
+        }
+
+        private void offer(Event event) {
+            for(EventSubscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            for(EventSubscription subscription : subscriptions) {
+                subscription.complete();
+            }
+        }
+
+        private void remove(EventSubscription subscription) {
+            if(subscriptions.remove(subscription)) {
+                liveSubscriptions.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Event> subscriber) {
+            EventSubscription subscription = new EventSubscription(this, subscriber);
+            subscriptions.add(subscription);
+            liveSubscriptions.incrementAndGet();
+            if(closed) {
+                subscription.complete();
+            }
+            subscription.start();
+        }
+
+    }
+
+    private static class EventSubscription implements Flow.Subscription, Runnable {
+        private final EventPublisher publisher;
+        private final Flow.Subscriber<? super Event> subscriber;
+        private final Event[] buffer;
+        private int head;
+        private int count;
+        private long demand;
+        private boolean subscribed;
+        private boolean draining;
+        private boolean cancelled;
+        private boolean completed;
+        private Throwable error;
+
+        private EventSubscription(EventPublisher publisher,
+                                  Flow.Subscriber<? super Event> subscriber) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+            buffer = new Event[publisher.backpressure == Backpressure.LATEST_ONLY ? 1 :
+                    publisher.bufferSize];
+        }
+
+        private void start() {
+            synchronized(this) {
+                draining = true;
+            }
+            publisher.executor.execute(this);
+        }
+
+        private void offer(Event event) {
+            synchronized(this) {
+                if(publisher.backpressure == Backpressure.BLOCK) {
+                    while(count == buffer.length && !cancelled) {
+                        try {
+                            wait();
+                        } catch(InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+                if(cancelled || completed) {
+                    return;
+                }
+                if(count == buffer.length) {
+                    //drop the oldest, with LATEST_ONLY that is the only one
+                    buffer[head] = null;
+                    head = (head + 1) % buffer.length;
+                    count--;
+                }
+                buffer[(head + count) % buffer.length] = event;
+                count++;
+            }
+            schedule();
+        }
+
+        private void complete() {
+            synchronized(this) {
+                completed = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized(this) {
+                if(draining || cancelled || !subscribed ||
+                        (demand <= 0 || count == 0) && !(completed && count == 0)) {
+                    return;
+                }
+                draining = true;
+            }
+            publisher.executor.execute(this);
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized(this) {
+                if(n <= 0) {
+                    error = new IllegalArgumentException("Request must be positive:" + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized(this) {
+                cancelled = true;
+                count = 0;
+                Arrays.fill(buffer, null);
+                notifyAll();
+            }
+            publisher.remove(this);
+        }
+
+        //delivers the signals on the executor, only one run at a time
+        @Override
+        public void run() {
+            if(!subscribed) {
+                subscriber.onSubscribe(this);
+                synchronized(this) {
+                    subscribed = true;
+                }
+            }
+            while(true) {
+                Event event;
+                Throwable failure = null;
+                boolean finished = false;
+                synchronized(this) {
+                    if(cancelled) {
+                        draining = false;
+                        return;
+                    }
+                    if(error != null) {
+                        failure = error;
+                        cancelled = true;
+                        event = null;
+                    } else if(demand > 0 && count > 0) {
+                        event = buffer[head];
+                        buffer[head] = null;
+                        head = (head + 1) % buffer.length;
+                        count--;
+                        demand--;
+                        notifyAll();
+                    } else if(completed && count == 0) {
+                        finished = true;
+                        cancelled = true;
+                        event = null;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+                if(failure != null) {
+                    publisher.remove(this);
+                    subscriber.onError(failure);
+                    return;
+                }
+                if(finished) {
+                    publisher.remove(this);
+                    subscriber.onComplete();
+                    return;
+                }
+                subscriber.onNext(event);
+            }
+        }
+
+    }
+
+    /**
+     * A WheelListener will receive calls when the scroll wheel is moved
+     */
+    public interface WheelListener {
+
+        /**
+         * gives amount of scrolls negative is up positve is down
+         * @param change the amount of movement from the mousewheel
+         */
+        void onScroll(int change);
+
+    }
+
+    private class KeyToggle {
+
         private final KeyToggleListener listener;
         //we suspect to only need one key
         List<Key> keys = new ArrayList<Key>(1);
@@ -739,6 +2151,108 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
         }
     }
 
+    /**
+     * Get the Key which is triggered by a gesture of the mouse
+     * <p>
+     *     A {@link Gesture#DRAG} Key is pressed for as long as the drag lasts, the other gestures
+     *     press their Key once when recognized so it will be clicked in the next tick.
+     *     These Keys are not saveable.
+     * </p>
+     * @param gesture the gesture
+     * @return the Key of the gesture
+     */
+    public Key getGestureKey(Gesture gesture) {
+        synchronized(motionLock) {
+            Key key = gestureKeys[gesture.ordinal()];
+            if(key == null) {
+                key = new Key(gesture.keyName, Collections.<UserInput>emptyList(), false);
+                gestureKeys[gesture.ordinal()] = key;
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Get the position where the current drag started
+     * @return the start of the drag or {@code null} if the mouse is not being dragged
+     */
+    public Point getDragStart() {
+        synchronized(motionLock) {
+            if(!gestures.dragging) {
+                return null;
+            }
+            return new Point(gestures.startX, gestures.startY);
+        }
+    }
+
+    /**
+     * The gestures recognized from dragging the mouse
+     * @see #getGestureKey(Gesture)
+     */
+    public enum Gesture {
+        /**
+         * A mouse button is held and the mouse moved far enough
+         */
+        DRAG("gestureDrag"),
+        /**
+         * A fast straight drag to the left
+         */
+        SWIPE_LEFT("gestureSwipeLeft"),
+        /**
+         * A fast straight drag to the right
+         */
+        SWIPE_RIGHT("gestureSwipeRight"),
+        /**
+         * A fast straight drag upwards
+         */
+        SWIPE_UP("gestureSwipeUp"),
+        /**
+         * A fast straight drag downwards
+         */
+        SWIPE_DOWN("gestureSwipeDown"),
+        /**
+         * A drag released while the mouse was still moving fast
+         */
+        FLICK("gestureFlick"),
+        /**
+         * A drag which went around in a full circle
+         */
+        CIRCLE("gestureCircle");
+
+        private final String keyName;
+
+        Gesture(String keyName) {
+            this.keyName = keyName;
+        }
+
+    }
+
+    /**
+     * A HitListener receives the mouse events of a {@link HitRegion}
+     * <p>
+     *     The Input holds no lock while calling it, so it can change regions and call back
+     *     into the Input
+     * </p>
+     */
+    public interface HitListener {
+
+        /**
+         * Called when the mouse enters or leaves the region
+         * @param hover {@code true} when the region is now the topmost region under the mouse
+         */
+        void onHover(boolean hover);
+
+        /**
+         * Called when the left or right mouse button is pressed on the region or released after
+         * being pressed on it
+         * @param button the Key of the mouse button, {@link #getLeftMouseButton()} or
+         *               {@link #getRightMouseButton()}
+         * @param state {@code true} when pressed {@code false} when released
+         */
+        void onButton(Key button, boolean state);
+
+    }
+
     /**
      * A KeyToggleListener will receive calls when one of the Key specified is pressed
      * @see #addKeyListener(KeyToggleListener, Key...)
@@ -773,6 +2287,234 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
      * @return wheter to stop listening
      */
 
+    /**
+     * Define a Key which is pressed while an expression over other Keys is true
+     * <p>
+     *     The expression is compiled once and evaluated every {@link #tick()} after all other
+     *     Keys are updated. The Key created is clicked in the tick the expression becomes true and
+     *     can not be saved or given inputs. An expression refers to Keys by name and can use:
+     * </p>
+     * <ul>
+     *     <li>{@code name} pressed</li>
+     *     <li>{@code clicked(name)} clicked</li>
+     *     <li>{@code held(name, n)} pressed for at least n ticks</li>
+     *     <li>{@code within(name, n)} clicked within the last n ticks</li>
+     *     <li>{@code !a}, {@code a & b}, {@code a | b} and parentheses, {@code !} binds
+     *     strongest, {@code |} weakest</li>
+     * </ul>
+     * <p>
+     *     For example {@code "clicked(jump) & !shift | clicked(pad)"}.
+     *     Actions can refer to actions defined before them.
+     * </p>
+     * @param name the name of the Key to create
+     * @param expression the expression
+     * @return the Key created
+     * @throws IllegalArgumentException if the expression is not valid, refers to a Key which does
+     *  not exist or a Key with that name already exists
+     */
+    public Key defineAction(String name, String expression) {
+        if(getKey(name) != null) {
+            throw new IllegalArgumentException("Key already exists:" + name);
+        }
+        ActionCompiler compiler = new ActionCompiler(expression);
+        int[] code = compiler.compile();
+        if(compiler.maxDepth > actionStack.length) {
+            actionStack = new boolean[compiler.maxDepth];
+        }
+        Key key = new Key(name, Collections.<UserInput>emptyList(), false);
+        key.action = true;
+        actions.add(new Action(key, code));
+        return key;
+    }
+
+    private class Action {
+        private final Key key;
+        private final int[] code;
+
+        private Action(Key key, int[] code) {
+            this.key = key;
+            this.code = code;
+        }
+
+        private void evaluate() {
+            boolean[] stack = actionStack;
+            int top = 0;
+            int[] code = this.code;
+            for(int pc = 0; pc < code.length; ) {
+                switch(code[pc++]) {
+                    case OP_PRESSED:
+                        stack[top++] = keys.get(code[pc++]).pressed;
+                        break;
+                    case OP_CLICKED:
+                        stack[top++] = keys.get(code[pc++]).clicked;
+                        break;
+                    case OP_HELD:
+                        stack[top++] = keys.get(code[pc++]).held >= code[pc++];
+                        break;
+                    case OP_WITHIN:
+                        stack[top++] = keys.get(code[pc++]).sinceClick < code[pc++];
+                        break;
+                    case OP_NOT:
+                        stack[top - 1] = !stack[top - 1];
+                        break;
+                    case OP_AND:
+                        top--;
+                        stack[top - 1] = stack[top - 1] & stack[top];
+                        break;
+                    case OP_OR:
+                        top--;
+                        stack[top - 1] = stack[top - 1] | stack[top];
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown instruction:" + code[pc - 1]);
+                }
+            }
+            key.setResult(stack[0]);
+        }
+
+    }
+
+    private class ActionCompiler {
+        private final String expression;
+        private int pos;
+        private int[] code = new int[16];
+        private int length;
+        private int depth;
+        private int maxDepth;
+
+        private ActionCompiler(String expression) {
+            this.expression = expression;
+        }
+
+        private int[] compile() {
+            parseOr();
+            skipSpaces();
+            if(pos < expression.length()) {
+                throw error("Unexpected '" + expression.charAt(pos) + "'");
+            }
+            return Arrays.copyOf(code, length);
+        }
+
+        private void parseOr() {
+            parseAnd();
+            while(accept('|')) {
+                parseAnd();
+                emit(OP_OR, -1);
+            }
+        }
+
+        private void parseAnd() {
+            parseUnary();
+            while(accept('&')) {
+                parseUnary();
+                emit(OP_AND, -1);
+            }
+        }
+
+        private void parseUnary() {
+            if(accept('!')) {
+                parseUnary();
+                emit(OP_NOT, 0);
+            } else if(accept('(')) {
+                parseOr();
+                expect(')');
+            } else {
+                String word = parseName();
+                if(accept('(')) {
+                    int op;
+                    if(word.equals("clicked")) {
+                        op = OP_CLICKED;
+                    } else if(word.equals("held")) {
+                        op = OP_HELD;
+                    } else if(word.equals("within")) {
+                        op = OP_WITHIN;
+                    } else {
+                        throw error("Unknown function:" + word);
+                    }
+                    emit(op, 1);
+                    emit(parseKey(), 0);
+                    if(op != OP_CLICKED) {
+                        expect(',');
+                        emit(parseCount(), 0);
+                    }
+                    expect(')');
+                } else {
+                    emit(OP_PRESSED, 1);
+                    emit(findKey(word), 0);
+                }
+            }
+        }
+
+        private int parseKey() {
+            return findKey(parseName());
+        }
+
+        private int findKey(String name) {
+            Key key = getKey(name);
+            if(key == null) {
+                throw error("Unknown key:" + name);
+            }
+            return key.id;
+        }
+
+        private int parseCount() {
+            String count = parseName();
+            try {
+                return Integer.parseInt(count);
+            } catch(NumberFormatException e) {
+                throw error("Not a number:" + count);
+            }
+        }
+
+        private String parseName() {
+            skipSpaces();
+            int start = pos;
+            while(pos < expression.length() && "()!&|,".indexOf(expression.charAt(pos)) < 0 &&
+                    !Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+            if(start == pos) {
+                throw error("Expected a name");
+            }
+            return expression.substring(start, pos);
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if(pos < expression.length() && expression.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if(!accept(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private void skipSpaces() {
+            while(pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private void emit(int value, int stackChange) {
+            if(length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = value;
+            depth += stackChange;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + pos + " in: " + expression);
+        }
+
+    }
+
     /**
      * Load a Key from a String
      * @param data the String to load from
@@ -791,6 +2533,285 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
         return getOrCreateKey(name, parts[1]);
     }
 
+    /**
+     * Register an enum of actions, every constant gets a Key
+     * <p>
+     *     The name of the Key is the name of the constant in camel case, {@code JUMP_HIGH}
+     *     becomes {@code jumpHigh}. If a Key with that name already exists, for example loaded
+     *     from a bindings file, that Key is used. Otherwise it is created with the inputs of
+     *     {@link Binding#getDefaultInputs()} when the enum implements {@link Binding}, or without
+     *     inputs.
+     * </p>
+     * @param type the class of the enum
+     * @param <E> the enum
+     * @return the Actions to query the Keys with
+     */
+    public <E extends Enum<E>> Actions<E> registerActions(Class<E> type) {
+        E[] constants = type.getEnumConstants();
+        Key[] actionKeys = new Key[constants.length];
+        for(E constant : constants) {
+            String name = toKeyName(constant.name());
+            Key key = getKey(name);
+            if(key == null) {
+                List<UserInput> userInputs = new ArrayList<UserInput>();
+                if(constant instanceof Binding) {
+                    String inputs = ((Binding) constant).getDefaultInputs();
+                    for(String data : inputs.split(INPUT_SEPARATOR)) {
+                        try {
+                            userInputs.add(loadKey(data));
+                        } catch(IllegalArgumentException ignored) {
+                        }
+                    }
+                }
+                key = new Key(name, userInputs);
+            }
+            actionKeys[constant.ordinal()] = key;
+        }
+        return new Actions<E>(actionKeys);
+    }
+
+    private static String toKeyName(String constant) {
+        StringBuilder builder = new StringBuilder(constant.length());
+        boolean upper = false;
+        for(int i = 0; i < constant.length(); i++) {
+            char c = constant.charAt(i);
+            if(c == '_') {
+                upper = builder.length() > 0;
+            } else {
+                builder.append(upper ? Character.toUpperCase(c) : Character.toLowerCase(c));
+                upper = false;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * An enum of actions can implement Binding to give the inputs of its Keys when they are
+     * first created
+     * @see #registerActions(Class)
+     */
+    public interface Binding {
+
+        /**
+         * The inputs in the save format, like {@code "k32,m1"}
+         * @return the inputs
+         */
+        String getDefaultInputs();
+
+    }
+
+    /**
+     * Actions gives access to the Keys of an enum of actions by constant
+     * @param <E> the enum
+     * @see #registerActions(Class)
+     */
+    public static final class Actions<E extends Enum<E>> {
+        private final Key[] keys;
+
+        private Actions(Key[] keys) {
+            this.keys = keys;
+        }
+
+        public Key getKey(E action) {
+            return keys[action.ordinal()];
+        }
+
+        public boolean isPressed(E action) {
+            return keys[action.ordinal()].pressed;
+        }
+
+        public boolean isClicked(E action) {
+            return keys[action.ordinal()].clicked;
+        }
+
+        public boolean isReleased(E action) {
+            return keys[action.ordinal()].released;
+        }
+
+        public int getClicks(E action) {
+            return keys[action.ordinal()].clicks;
+        }
+
+    }
+
+    /**
+     * Load the Keys from a bindings file and keep them up to date while the file changes
+     * <p>
+     *     The file contains Keys in the format of {@link Key#save()}, separated by newlines or
+     *     {@value #KEY_END}. The Keys in the file are created or get exactly the inputs in the
+     *     file right away. After that the file is watched and only the Keys whose line changed are
+     *     parsed again, on a separate thread. The changes are applied at the start of the next
+     *     {@link #tick()}. A Key which is removed from the file loses its inputs.
+     * </p>
+     * <p>
+     *     The file is read once its changes settle. An empty file or a line without any input
+     *     that can be parsed is taken as half written and leaves the Keys as they are. A held Key
+     *     is only released when the input which pressed it is removed.
+     * </p>
+     * @param file the bindings file
+     * @return the BindingWatcher, close it to stop watching
+     * @throws IOException if the file could not be read or watched
+     */
+    public BindingWatcher watchBindings(File file) throws IOException {
+        BindingWatcher watcher = new BindingWatcher(file);
+        watcher.reload();
+        watcher.apply();
+        bindingWatchers.add(watcher);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    private static class BindingChange {
+        private final String name;
+        private final List<UserInput> inputs;
+
+        private BindingChange(String name, List<UserInput> inputs) {
+            this.name = name;
+            this.inputs = inputs;
+        }
+
+    }
+
+    /**
+     * A BindingWatcher keeps Keys up to date with a bindings file
+     * @see #watchBindings(File)
+     */
+    public class BindingWatcher implements Closeable {
+        private final Path path;
+        private final WatchService watchService;
+        private final Thread thread;
+        //only used by the watching thread after the first load
+        private Map<String, String> loaded = new HashMap<String, String>();
+        private final Queue<BindingChange> changes = new ConcurrentLinkedQueue<BindingChange>();
+
+        private BindingWatcher(File file) throws IOException {
+            path = file.getAbsoluteFile().toPath();
+            watchService = path.getFileSystem().newWatchService();
+            try {
+                path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch(IOException e) {
+                watchService.close();
+                throw e;
+            }
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    watch();
+                }
+            }, "Bindings " + file.getName());
+            thread.setDaemon(true);
+        }
+
+        private void watch() {
+            try {
+                while(true) {
+                    boolean changed = false;
+                    //editors write in several steps, wait until the events stop
+                    for(WatchKey key = watchService.take(); key != null;
+                        key = watchService.poll(BINDINGS_SETTLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                        for(WatchEvent<?> event : key.pollEvents()) {
+                            if(path.getFileName().equals(event.context())) {
+                                changed = true;
+                            }
+                        }
+                        key.reset();
+                    }
+                    if(changed) {
+                        try {
+                            reload();
+                        } catch(IOException ignored) {
+                            //the file might be written right now, the next event reloads it
+                        }
+                    }
+                }
+            } catch(InterruptedException ignored) {
+            } catch(ClosedWatchServiceException ignored) {
+            }
+        }
+
+        private void reload() throws IOException {
+            String data = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            Map<String, String> current = new HashMap<String, String>();
+            for(String entry : data.split("[\\r\\n" + KEY_END + "]")) {
+                int separator = entry.indexOf(NAME_SEPARATOR);
+                if(separator <= 0) {
+                    continue;
+                }
+                current.put(entry.substring(0, separator).trim(),
+                        entry.substring(separator + NAME_SEPARATOR.length()).trim());
+            }
+            if(current.isEmpty()) {
+                //most likely truncated by an editor which is about to write it again
+                return;
+            }
+            for(Map.Entry<String, String> entry : current.entrySet()) {
+                String old = loaded.get(entry.getKey());
+                if(entry.getValue().equals(old)) {
+                    continue;
+                }
+                List<UserInput> inputs = parseInputs(entry.getValue());
+                if(inputs.isEmpty() && !entry.getValue().isEmpty() && old != null) {
+                    //nothing could be parsed, keep the old inputs and compare to those next time
+                    entry.setValue(old);
+                    continue;
+                }
+                changes.add(new BindingChange(entry.getKey(), inputs));
+            }
+            for(String name : loaded.keySet()) {
+                if(!current.containsKey(name)) {
+                    changes.add(new BindingChange(name, Collections.<UserInput>emptyList()));
+                }
+            }
+            loaded = current;
+        }
+
+        private List<UserInput> parseInputs(String inputs) {
+            List<UserInput> userInputs = new ArrayList<UserInput>();
+            for(String data : inputs.split(INPUT_SEPARATOR)) {
+                try {
+                    userInputs.add(loadKey(data.trim()));
+                } catch(IllegalArgumentException ignored) {
+                }
+            }
+            return userInputs;
+        }
+
+        private void apply() {
+            BindingChange change;
+            while((change = changes.poll()) != null) {
+                Key key = getKey(change.name);
+                if(key == null) {
+                    if(!change.inputs.isEmpty()) {
+                        new Key(change.name, change.inputs);
+                    }
+                    continue;
+                }
+                if(key.action) {
+                    continue;
+                }
+                key.inputs = new HashSet<UserInput>(change.inputs);
+                //its release would no longer reach the Key
+                UserInput holder = key.heldBy;
+                if(key.pressed && holder != null && !key.inputs.contains(holder)) {
+                    key.press(false, false, System.currentTimeMillis());
+                }
+            }
+        }
+
+        /**
+         * Stop watching the file, changes which are not yet applied are dropped
+         * @throws IOException if the watching could not be stopped
+         */
+        @Override
+        public void close() throws IOException {
+            bindingWatchers.remove(this);
+            watchService.close();
+            changes.clear();
+        }
+
+    }
+
     /**
      * A Key can be assinged inputs on which it will react
      * <p>
@@ -803,11 +2824,32 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
         private final boolean saveable;
         private boolean pressed;
         private boolean clicked;
+        //pressed state of the last frame written by writeFrame
+        private boolean sentPressed;
         private int once;
         private int presses;
         private int pressdone;
+        private int clicks;
+        //presses while already pressed, the auto repeat of the system
+        private int repeats;
+        private int repeatdone;
+        private int frameRepeats;
+        private int repeatRate;
+        private boolean repeated;
+        private int releases;
+        private int releasedone;
+        private boolean released;
+        private int held;
+        //ticks since the last click
+        private int sinceClick = Integer.MAX_VALUE;
+        //whether this Key is defined by an expression
+        private boolean action;
         private final String name;
-        private Set<UserInput> inputs = new HashSet<UserInput>();
+        private final int id;
+        //replaced as a whole when bindings are reloaded
+        private volatile Set<UserInput> inputs = new HashSet<UserInput>();
+        //the input which pressed it last
+        private UserInput heldBy;
 
         private Key(String name, List<UserInput> userInputs) {
             this(name, userInputs, true);
@@ -817,21 +2859,42 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
             this.name = name;
             this.saveable = saveable;
             inputs.addAll(userInputs);
+            id = keys.size();
             keys.add(this);
         }
 
-        private void pressOnce() {
-            toggle(true);
+        private void pressOnce(long when) {
+            press(true, false, when);
             once = 2;
         }
 
-        void toggle(boolean in) {
+        void toggle(boolean in, long when) {
+            press(in, true, when);
+        }
+
+        //when is the time of the event causing it, like System.currentTimeMillis()
+        private void press(boolean in, boolean canRepeat, long when) {
+            if(canRepeat && in && pressed && once == 0) {
+                //the system repeats presses of held keys, this is not a new click
+                repeats++;
+                return;
+            }
             once = 0;
-            if(in != pressed) {
+            boolean changed = in != pressed;
+            if(changed) {
                 pressed = in;
             }
+            if(!in) {
+                heldBy = null;
+            }
             if(in) {
                 presses++;
+            } else if(changed) {
+                releases++;
+            }
+            if((in || changed) && liveSubscriptions.get() > 0) {
+                publish(new Event(in ? EventType.KEY_PRESS : EventType.KEY_RELEASE, this, x, y, 0,
+                        when));
             }
             for(Iterator<KeyToggle> iter = keyToggles.iterator(); iter.hasNext(); ) {
                 KeyToggle toggle = iter.next();
@@ -840,7 +2903,7 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
                         iter.remove();
                     }
                     //if consumed was already true keep it that way
-                    if(toggle.willConsume(pressed)) {
+                    if(toggle.willConsume(pressed) && in) {
                         //don't count this clicked
                         presses--;
                     }
@@ -849,32 +2912,108 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
         }
 
         /**
-         * Call to update the Key
+         * Call to update the Key
+         * <p>
+         *     When a Key has been pressed since the last tick this will activate the clicked state,
+         *     presses which happened before the last tick are never carried over
+         * </p>
+         */
+        public void tick() {
+            int done = presses;
+            clicks = Math.max(0, done - pressdone);
+            pressdone = done;
+            clicked = clicks > 0;
+            done = repeats;
+            frameRepeats = done - repeatdone;
+            repeatdone = done;
+            done = releases;
+            released = done != releasedone;
+            releasedone = done;
+            if(once > 0 && pressed) {
+                once--;
+                if(once <= 0) {
+                    pressed = false;
+                    released = true;
+                    if(liveSubscriptions.get() > 0) {
+                        publish(new Event(EventType.KEY_RELEASE, this, x, y, 0,
+                                System.currentTimeMillis()));
+                    }
+                }
+            }
+            advance();
+        }
+
+        //the part of a tick which follows from the new state, also run for read frames
+        private void advance() {
+            held = pressed ? held + 1 : 0;
+            if(clicked) {
+                sinceClick = 0;
+            } else if(sinceClick < Integer.MAX_VALUE) {
+                sinceClick++;
+            }
+            repeated = repeatRate > 0 && held > 1 && (held - 1) % repeatRate == 0;
+        }
+
+        public boolean isPressed() {
+            return pressed;
+        }
+
+        public boolean isClicked() {
+            return clicked;
+        }
+
+        /**
+         * Whether this Key was released in the last tick
+         * @return {@code true} if the Key was released since the tick before the last tick
+         */
+        public boolean isReleased() {
+            return released;
+        }
+
+        /**
+         * Get how many times this Key was pressed since the tick before the last tick
+         * @return the amount of clicks, 0 when not clicked
+         */
+        public int getClicks() {
+            return clicks;
+        }
+
+        /**
+         * Get how many repeated presses the system sent for this Key since the tick before the
+         * last tick
          * <p>
-         *     When a Key has just been pressed this will activate the clicked state
+         *     Holding a key makes the system send presses while it is already pressed, these are
+         *     not counted as clicks
          * </p>
+         * @return the amount of repeated presses
          */
-        public void tick() {
-            if(pressdone < presses) {
-                pressdone++;
-                clicked = true;
-            } else {
-                clicked = false;
-            }
-            if(once > 0 && pressed) {
-                once--;
-                if(once <= 0) {
-                    pressed = false;
-                }
-            }
+        public int getRepeats() {
+            return frameRepeats;
         }
 
-        public boolean isPressed() {
-            return pressed;
+        /**
+         * Whether the Key repeated in the last tick at the repeat rate
+         * @return {@code true} when held and a repeat is due in this tick
+         * @see #setRepeatRate(int)
+         */
+        public boolean isRepeated() {
+            return repeated;
         }
 
-        public boolean isClicked() {
-            return clicked;
+        /**
+         * Set the repeat rate of this Key
+         * <p>
+         *     While held the Key repeats every rate ticks after it was clicked
+         * </p>
+         * @param rate the amount of ticks between repeats, 0 to never repeat
+         * @see #isRepeated()
+         */
+        public void setRepeatRate(int rate) {
+            repeatRate = rate;
+        }
+
+        public int getRepeatRate() {
+            return repeatRate;
         }
 
         public boolean isSaveable() {
@@ -885,7 +3024,34 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
             return name;
         }
 
+        /**
+         * Get the id of this Key
+         * <p>
+         *     Ids are dense and given in the order the Keys are created, starting at 0
+         * </p>
+         * @return the id
+         */
+        public int getId() {
+            return id;
+        }
+
+        private void setResult(boolean result) {
+            released = pressed && !result;
+            clicked = result && !pressed;
+            clicks = clicked ? 1 : 0;
+            if(clicked) {
+                sinceClick = 0;
+                held = 1;
+            } else if(!result) {
+                held = 0;
+            }
+            pressed = result;
+        }
+
         private void addInput(UserInput input) {
+            if(action) {
+                return;
+            }
             inputs.add(input);
         }
 
@@ -948,6 +3114,806 @@ public class Input implements MouseListener, MouseMotionListener, MouseWheelList
 
     }
 
+    /**
+     * A FrameHistory keeps the state of the last frames in a fixed size ring
+     * <p>
+     *     For every frame the pressed and clicked state of all Keys, the mouse position and the
+     *     wheel rotation is kept. Frames can be overwritten, for example when a late input of a
+     *     remote player arrives, as long as they are still within the capacity.
+     *     Corrections can also arrive early, for frames up to the capacity ahead of the current
+     *     frame, recording that frame later keeps them.
+     * </p>
+     * @see #enableHistory(int)
+     */
+    public class FrameHistory {
+        private final int capacity;
+        private int words;
+        private final long[] frames;
+        private long[] pressed;
+        private long[] clicked;
+        //the Keys and mouse state set by setKey and setMouse, recording keeps them
+        private long[] corrected;
+        private final boolean[] mouseCorrected;
+        private final int[] mouseX;
+        private final int[] mouseY;
+        private final int[] wheel;
+        private long latest;
+
+        private FrameHistory(int capacity) {
+            if(capacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be positive:" + capacity);
+            }
+            this.capacity = capacity;
+            words = Math.max(1, (keys.size() + 63) >> 6);
+            frames = new long[capacity];
+            Arrays.fill(frames, -1);
+            pressed = new long[capacity * words];
+            clicked = new long[capacity * words];
+            corrected = new long[capacity * words];
+            mouseCorrected = new boolean[capacity];
+            mouseX = new int[capacity];
+            mouseY = new int[capacity];
+            wheel = new int[capacity];
+        }
+
+        private void ensureKeys(int size) {
+            int needed = (size + 63) >> 6;
+            if(needed <= words) {
+                return;
+            }
+            long[] newPressed = new long[capacity * needed];
+            long[] newClicked = new long[capacity * needed];
+            long[] newCorrected = new long[capacity * needed];
+            for(int i = 0; i < capacity; i++) {
+                System.arraycopy(pressed, i * words, newPressed, i * needed, words);
+                System.arraycopy(clicked, i * words, newClicked, i * needed, words);
+                System.arraycopy(corrected, i * words, newCorrected, i * needed, words);
+            }
+            pressed = newPressed;
+            clicked = newClicked;
+            corrected = newCorrected;
+            words = needed;
+        }
+
+        private int slot(long frame) {
+            return (int) (frame % capacity);
+        }
+
+        //frames too far ahead of the current frame are refused, they would push out frames the
+        //next ticks still have to record
+        private boolean accepts(long frame) {
+            return frame > 0 && frame > latest - capacity && frame < Input.this.frame + capacity;
+        }
+
+        private int claim(long frame) {
+            if(!accepts(frame)) {
+                throw new IllegalArgumentException("Frame not within the history:" + frame);
+            }
+            int slot = slot(frame);
+            if(frames[slot] != frame) {
+                frames[slot] = frame;
+                Arrays.fill(pressed, slot * words, slot * words + words, 0);
+                Arrays.fill(clicked, slot * words, slot * words + words, 0);
+                Arrays.fill(corrected, slot * words, slot * words + words, 0);
+                mouseCorrected[slot] = false;
+                mouseX[slot] = 0;
+                mouseY[slot] = 0;
+                wheel[slot] = 0;
+            }
+            if(frame > latest) {
+                latest = frame;
+            }
+            return slot;
+        }
+
+        private int find(long frame) {
+            int slot = slot(frame);
+            if(frame < 0 || frames[slot] != frame) {
+                throw new IllegalArgumentException("Frame not in the history:" + frame);
+            }
+            return slot;
+        }
+
+        //records a tick of the Input, this must never throw from inside tick
+        private void recordTick() {
+            if(accepts(frame)) {
+                record(frame, Input.this);
+            }
+        }
+
+        /**
+         * Record the current state of an Input as the state of a frame
+         * <p>
+         *     The Input should have the same Keys in the same order, any other Keys are ignored.
+         *     State set with {@link #setKey(long, Key, boolean, boolean)} and
+         *     {@link #setMouse(long, int, int, int)} for this frame is kept.
+         * </p>
+         * @param frame the frame to overwrite
+         * @param source the Input to take the state from
+         * @throws IllegalArgumentException if the frame is no longer or not yet within the history
+         */
+        public void record(long frame, Input source) {
+            int size = Math.min(source.keys.size(), keys.size());
+            ensureKeys(size);
+            int slot = claim(frame);
+            int base = slot * words;
+            for(int w = 0; w < words; w++) {
+                long p = 0;
+                long c = 0;
+                int end = Math.min(size, (w + 1) << 6);
+                for(int id = w << 6; id < end; id++) {
+                    Key key = source.keys.get(id);
+                    if(key.pressed) {
+                        p |= 1L << id;
+                    }
+                    if(key.clicked) {
+                        c |= 1L << id;
+                    }
+                }
+                long keep = corrected[base + w];
+                pressed[base + w] = p & ~keep | pressed[base + w] & keep;
+                clicked[base + w] = c & ~keep | clicked[base + w] & keep;
+            }
+            if(!mouseCorrected[slot]) {
+                mouseX[slot] = source.x;
+                mouseY[slot] = source.y;
+                wheel[slot] = source.frameWheel;
+            }
+        }
+
+        /**
+         * Overwrite the state of one Key in a frame
+         * @param frame the frame to overwrite
+         * @param key the Key
+         * @param isPressed whether the Key was pressed
+         * @param isClicked whether the Key was clicked
+         * @throws IllegalArgumentException if the frame is no longer within the history or more
+         *                                  than the capacity ahead of the current frame
+         */
+        public void setKey(long frame, Key key, boolean isPressed, boolean isClicked) {
+            ensureKeys(key.id + 1);
+            int index = claim(frame) * words + (key.id >> 6);
+            long bit = 1L << key.id;
+            pressed[index] = isPressed ? pressed[index] | bit : pressed[index] & ~bit;
+            clicked[index] = isClicked ? clicked[index] | bit : clicked[index] & ~bit;
+            corrected[index] |= bit;
+        }
+
+        /**
+         * Overwrite the mouse state of a frame
+         * @param frame the frame to overwrite
+         * @param x the x position of the mouse
+         * @param y the y position of the mouse
+         * @param rotation the wheel rotation
+         * @throws IllegalArgumentException if the frame is no longer within the history or more
+         *                                  than the capacity ahead of the current frame
+         */
+        public void setMouse(long frame, int x, int y, int rotation) {
+            int slot = claim(frame);
+            mouseX[slot] = x;
+            mouseY[slot] = y;
+            wheel[slot] = rotation;
+            mouseCorrected[slot] = true;
+        }
+
+        /**
+         * Check whether a frame is kept in this history
+         * @param frame the frame number
+         * @return whether the frame is available
+         */
+        public boolean contains(long frame) {
+            return frame >= 0 && frames[slot(frame)] == frame;
+        }
+
+        /**
+         * Get the latest frame in this history
+         * @return the frame number or 0 if nothing is recorded yet
+         */
+        public long getLatestFrame() {
+            return latest;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public boolean isPressed(long frame, Key key) {
+            return isPressed(frame, key.id);
+        }
+
+        public boolean isPressed(long frame, int id) {
+            int index = find(frame) * words + (id >> 6);
+            return (id >> 6) < words && (pressed[index] & 1L << id) != 0;
+        }
+
+        public boolean isClicked(long frame, Key key) {
+            return isClicked(frame, key.id);
+        }
+
+        public boolean isClicked(long frame, int id) {
+            int index = find(frame) * words + (id >> 6);
+            return (id >> 6) < words && (clicked[index] & 1L << id) != 0;
+        }
+
+        public int getX(long frame) {
+            return mouseX[find(frame)];
+        }
+
+        public int getY(long frame) {
+            return mouseY[find(frame)];
+        }
+
+        public int getWheelRotation(long frame) {
+            return wheel[find(frame)];
+        }
+
+    }
+
+    /**
+     * A HitRegion is a rectangle which receives the mouse events when it is the topmost region
+     * under the mouse
+     * @see #addHitRegion(HitRegion)
+     */
+    public class HitRegion {
+        private final HitListener listener;
+        private int x;
+        private int y;
+        private int width;
+        private int height;
+        private int layer;
+        private int order;
+        private boolean registered;
+
+        /**
+         * Create a HitRegion, it needs to be added with {@link #addHitRegion(HitRegion)}
+         * @param listener the listener which receives the events
+         * @param x the x of the top left corner
+         * @param y the y of the top left corner
+         * @param width the width
+         * @param height the height
+         * @param layer the layer, regions in a higher layer are above regions in a lower layer
+         */
+        public HitRegion(HitListener listener, int x, int y, int width, int height, int layer) {
+            this.listener = listener;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.layer = layer;
+        }
+
+        /**
+         * Move or resize this region
+         * @param x the x of the top left corner
+         * @param y the y of the top left corner
+         * @param width the width
+         * @param height the height
+         */
+        public void setBounds(int x, int y, int width, int height) {
+            synchronized(motionLock) {
+                if(registered) {
+                    indexRegion(this, false);
+                }
+                this.x = x;
+                this.y = y;
+                this.width = width;
+                this.height = height;
+                if(registered) {
+                    indexRegion(this, true);
+                    updateHover();
+                }
+            }
+            runDeferred();
+        }
+
+        /**
+         * Change the layer of this region
+         * @param layer the layer, regions in a higher layer are above regions in a lower layer
+         */
+        public void setLayer(int layer) {
+            synchronized(motionLock) {
+                this.layer = layer;
+                if(registered) {
+                    updateHover();
+                }
+            }
+            runDeferred();
+        }
+
+        public boolean contains(int px, int py) {
+            return px >= x && py >= y && px - x < width && py - y < height;
+        }
+
+        private boolean isAbove(HitRegion other) {
+            return layer > other.layer || layer == other.layer && order > other.order;
+        }
+
+        public boolean isHovered() {
+            return hovered == this;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getLayer() {
+            return layer;
+        }
+
+    }
+
+    private class GestureTracker {
+        //distance in pixels before a press becomes a drag
+        private static final int DRAG_DISTANCE = 8;
+        //a swipe goes at least this far within the time and is mostly straight
+        private static final int SWIPE_DISTANCE = 80;
+        private static final long SWIPE_TIME = 500;
+        private static final double SWIPE_STRAIGHTNESS = 0.8;
+        //release speed in pixels per millisecond for a flick
+        private static final double FLICK_SPEED = 1.5;
+        //movement needed before the direction of the path is measured again
+        private static final int TURN_STEP = 4;
+        private static final double CIRCLE_TURN = Math.PI * 2 * 0.9;
+        private static final int CIRCLE_LENGTH = 100;
+
+        private boolean active;
+        private boolean dragging;
+        private int button;
+        private int startX;
+        private int startY;
+        private long startTime;
+        private int lastX;
+        private int lastY;
+        private long lastTime;
+        private double length;
+        private double speedX;
+        private double speedY;
+        //the path direction is sampled each time it moved TURN_STEP from the anchor
+        private int anchorX;
+        private int anchorY;
+        private double direction;
+        private boolean hasDirection;
+        private double turn;
+
+        private void start(int button, int x, int y, long when) {
+            if(active) {
+                return;
+            }
+            active = true;
+            dragging = false;
+            this.button = button;
+            startX = lastX = anchorX = x;
+            startY = lastY = anchorY = y;
+            startTime = lastTime = when;
+            length = 0;
+            speedX = speedY = 0;
+            hasDirection = false;
+            turn = 0;
+        }
+
+        private void sample(int x, int y, long when) {
+            if(!active) {
+                return;
+            }
+            int dx = x - lastX;
+            int dy = y - lastY;
+            length += Math.sqrt(dx * dx + dy * dy);
+            long time = when - lastTime;
+            if(time > 0) {
+                //smooth the speed so a single jittery event does not decide a flick
+                speedX = (speedX + (double) dx / time) / 2;
+                speedY = (speedY + (double) dy / time) / 2;
+            }
+            lastX = x;
+            lastY = y;
+            lastTime = when;
+
+            if(!dragging && (Math.abs(x - startX) >= DRAG_DISTANCE ||
+                    Math.abs(y - startY) >= DRAG_DISTANCE)) {
+                dragging = true;
+                if(gestureKeys[Gesture.DRAG.ordinal()] != null) {
+                    gestureKeys[Gesture.DRAG.ordinal()].toggle(true, when);
+                }
+            }
+
+            int ax = x - anchorX;
+            int ay = y - anchorY;
+            if(ax * ax + ay * ay >= TURN_STEP * TURN_STEP) {
+                double newDirection = Math.atan2(ay, ax);
+                if(hasDirection) {
+                    double change = newDirection - direction;
+                    if(change > Math.PI) {
+                        change -= Math.PI * 2;
+                    } else if(change < -Math.PI) {
+                        change += Math.PI * 2;
+                    }
+                    turn += change;
+                }
+                direction = newDirection;
+                hasDirection = true;
+                anchorX = x;
+                anchorY = y;
+                if(Math.abs(turn) >= CIRCLE_TURN && length >= CIRCLE_LENGTH) {
+                    int sx = x - startX;
+                    int sy = y - startY;
+                    if(Math.sqrt(sx * sx + sy * sy) <= length / 4) {
+                        fire(Gesture.CIRCLE, when);
+                    }
+                    turn = 0;
+                }
+            }
+        }
+
+        private void end(int button, int x, int y, long when) {
+            if(!active || button != this.button) {
+                return;
+            }
+            //releases usually come at the last drag position a bit later, sampling that would
+            //halve the speed right before it decides a flick
+            if(x != lastX || y != lastY) {
+                sample(x, y, when);
+            }
+            active = false;
+            if(!dragging) {
+                return;
+            }
+            dragging = false;
+            if(gestureKeys[Gesture.DRAG.ordinal()] != null) {
+                gestureKeys[Gesture.DRAG.ordinal()].toggle(false, when);
+            }
+
+            int dx = x - startX;
+            int dy = y - startY;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if(distance >= SWIPE_DISTANCE && when - startTime <= SWIPE_TIME &&
+                    distance >= length * SWIPE_STRAIGHTNESS) {
+                if(Math.abs(dx) >= Math.abs(dy)) {
+                    fire(dx < 0 ? Gesture.SWIPE_LEFT : Gesture.SWIPE_RIGHT, when);
+                } else {
+                    fire(dy < 0 ? Gesture.SWIPE_UP : Gesture.SWIPE_DOWN, when);
+                }
+            }
+            if(speedX * speedX + speedY * speedY >= FLICK_SPEED * FLICK_SPEED) {
+                fire(Gesture.FLICK, when);
+            }
+        }
+
+        private void fire(Gesture gesture, long when) {
+            Key key = gestureKeys[gesture.ordinal()];
+            if(key != null) {
+                key.pressOnce(when);
+            }
+        }
+
+    }
+
+    private static int sharedWords(int maxKeys) {
+        return (maxKeys + 63) >> 6;
+    }
+
+    private static int sharedSize(int maxKeys) {
+        return SHARED_BITS_OFFSET + sharedWords(maxKeys) * 16 + maxKeys * SHARED_NAME_BYTES;
+    }
+
+    private class SharedStatePublisher {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int maxKeys;
+        private final int words;
+        private long sequence;
+        private int namedKeys = -1;
+        private boolean closed;
+
+        private SharedStatePublisher(File file, int maxKeys) throws IOException {
+            if(maxKeys <= 0) {
+                throw new IllegalArgumentException("maxKeys must be positive:" + maxKeys);
+            }
+            this.maxKeys = maxKeys;
+            words = sharedWords(maxKeys);
+            int size = sharedSize(maxKeys);
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                //readers may have the old file mapped, truncating it would make them fault
+                if(raf.length() < size) {
+                    raf.setLength(size);
+                }
+                channel = raf.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch(IOException e) {
+                raf.close();
+                throw e;
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            //continue the sequence of a previous publisher so readers see the change
+            if(buffer.getInt(SHARED_MAGIC_OFFSET) == SHARED_MAGIC) {
+                sequence = (long) SHARED_LONG.getOpaque(buffer, SHARED_SEQUENCE_OFFSET);
+                sequence += sequence & 1;
+            }
+            SHARED_LONG.setOpaque(buffer, SHARED_SEQUENCE_OFFSET, ++sequence);
+            VarHandle.storeStoreFence();
+            buffer.putInt(SHARED_VERSION_OFFSET, SHARED_VERSION);
+            buffer.putInt(SHARED_MAX_KEYS_OFFSET, maxKeys);
+            //an empty frame until the first tick
+            for(int offset = SHARED_FRAME_OFFSET; offset < SHARED_MAX_KEYS_OFFSET; offset += 4) {
+                buffer.putInt(offset, 0);
+            }
+            buffer.putInt(SHARED_NAMES_LENGTH_OFFSET, 0);
+            for(int w = 0; w < words * 2; w++) {
+                buffer.putLong(SHARED_BITS_OFFSET + w * 8, 0);
+            }
+            //the magic goes last so readers never see a half written header
+            VarHandle.releaseFence();
+            buffer.putInt(SHARED_MAGIC_OFFSET, SHARED_MAGIC);
+            SHARED_LONG.setRelease(buffer, SHARED_SEQUENCE_OFFSET, ++sequence);
+        }
+
+        //synchronized with close so a stopped publisher never writes again
+        private synchronized void publish() {
+            if(closed) {
+                return;
+            }
+            int size = Math.min(keys.size(), maxKeys);
+            SHARED_LONG.setOpaque(buffer, SHARED_SEQUENCE_OFFSET, ++sequence);
+            VarHandle.storeStoreFence();
+
+            buffer.putLong(SHARED_FRAME_OFFSET, frame);
+            buffer.putInt(SHARED_X_OFFSET, x);
+            buffer.putInt(SHARED_Y_OFFSET, y);
+            buffer.putInt(SHARED_WHEEL_OFFSET, frameWheel);
+            buffer.putInt(SHARED_KEY_COUNT_OFFSET, size);
+            for(int w = 0; w < words; w++) {
+                long p = 0;
+                long c = 0;
+                int end = Math.min(size, (w + 1) << 6);
+                for(int id = w << 6; id < end; id++) {
+                    Key key = keys.get(id);
+                    if(key.pressed) {
+                        p |= 1L << id;
+                    }
+                    if(key.clicked) {
+                        c |= 1L << id;
+                    }
+                }
+                buffer.putLong(SHARED_BITS_OFFSET + w * 8, p);
+                buffer.putLong(SHARED_BITS_OFFSET + (words + w) * 8, c);
+            }
+            if(namedKeys != size) {
+                writeNames(size);
+            }
+
+            SHARED_LONG.setRelease(buffer, SHARED_SEQUENCE_OFFSET, ++sequence);
+        }
+
+        //only when Keys are added so the allocation does not matter
+        private void writeNames(int size) {
+            int offset = SHARED_BITS_OFFSET + words * 16;
+            int capacity = maxKeys * SHARED_NAME_BYTES;
+            int length = 0;
+            for(int id = 0; id < size; id++) {
+                byte[] name = keys.get(id).name.getBytes(StandardCharsets.UTF_8);
+                if(length + name.length + 1 > capacity) {
+                    break;
+                }
+                for(byte b : name) {
+                    buffer.put(offset + length++, b);
+                }
+                buffer.put(offset + length++, (byte) '\n');
+            }
+            buffer.putInt(SHARED_NAMES_LENGTH_OFFSET, length);
+            namedKeys = size;
+        }
+
+        private synchronized void close() throws IOException {
+            closed = true;
+            channel.close();
+        }
+
+    }
+
+    /**
+     * A SharedStateReader reads the state published by {@link #publishState(File, int)},
+     * possibly in another process
+     * <p>
+     *     Call {@link #update()} to take a consistent copy of the latest frame, the getters
+     *     return the values of that copy
+     * </p>
+     */
+    public static class SharedStateReader implements Closeable {
+        private final RandomAccessFile file;
+        private final MappedByteBuffer buffer;
+        private final int maxKeys;
+        private final int words;
+        private final long[] pressed;
+        private final long[] clicked;
+        //an update reads into these first so a failed read keeps the last copy
+        private final long[] pressedRead;
+        private final long[] clickedRead;
+        private final byte[] nameBytes;
+        private long frame = -1;
+        private int x;
+        private int y;
+        private int wheel;
+        private int keyCount;
+        private int namesLength;
+        private String[] names = new String[0];
+        private int namedKeys = -1;
+
+        /**
+         * Open a file written by {@link #publishState(File, int)}
+         * @param file the file
+         * @throws IOException if the file could not be mapped or is not a published state
+         */
+        public SharedStateReader(File file) throws IOException {
+            this.file = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = this.file.getChannel();
+                if(channel.size() < SHARED_BITS_OFFSET) {
+                    throw new IOException("Not an input state file:" + file);
+                }
+                MappedByteBuffer header =
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0, SHARED_BITS_OFFSET);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                if(header.getInt(SHARED_MAGIC_OFFSET) != SHARED_MAGIC ||
+                        header.getInt(SHARED_VERSION_OFFSET) != SHARED_VERSION) {
+                    throw new IOException("Not an input state file:" + file);
+                }
+                VarHandle.acquireFence();
+                maxKeys = header.getInt(SHARED_MAX_KEYS_OFFSET);
+                if(maxKeys <= 0 || channel.size() < sharedSize(maxKeys)) {
+                    throw new IOException("Input state file is truncated:" + file);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, sharedSize(maxKeys));
+            } catch(IOException e) {
+                this.file.close();
+                throw e;
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            words = sharedWords(maxKeys);
+            pressed = new long[words];
+            clicked = new long[words];
+            pressedRead = new long[words];
+            clickedRead = new long[words];
+            nameBytes = new byte[maxKeys * SHARED_NAME_BYTES];
+        }
+
+        /**
+         * Copy the latest published frame
+         * <p>
+         *     If the publisher stays in the middle of writing a frame, for example because it
+         *     died while writing, this gives up after a while and keeps the last copy. It also
+         *     keeps the last copy once the file is published with a different maximum amount of
+         *     Keys, open a new reader for that.
+         * </p>
+         * @return whether a new frame was copied since the last update
+         */
+        public boolean update() {
+            long newFrame = 0;
+            int newX = 0;
+            int newY = 0;
+            int newWheel = 0;
+            int newCount = 0;
+            boolean consistent = false;
+            for(int attempt = 0; attempt < SHARED_READ_ATTEMPTS && !consistent; attempt++) {
+                long before = (long) SHARED_LONG.getAcquire(buffer, SHARED_SEQUENCE_OFFSET);
+                if((before & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if(buffer.getInt(SHARED_MAX_KEYS_OFFSET) != maxKeys) {
+                    VarHandle.acquireFence();
+                    if((long) SHARED_LONG.getOpaque(buffer, SHARED_SEQUENCE_OFFSET) == before) {
+                        return false;
+                    }
+                    continue;
+                }
+                newFrame = buffer.getLong(SHARED_FRAME_OFFSET);
+                newX = buffer.getInt(SHARED_X_OFFSET);
+                newY = buffer.getInt(SHARED_Y_OFFSET);
+                newWheel = buffer.getInt(SHARED_WHEEL_OFFSET);
+                newCount = buffer.getInt(SHARED_KEY_COUNT_OFFSET);
+                for(int w = 0; w < words; w++) {
+                    pressedRead[w] = buffer.getLong(SHARED_BITS_OFFSET + w * 8);
+                    clickedRead[w] = buffer.getLong(SHARED_BITS_OFFSET + (words + w) * 8);
+                }
+                if(newCount != namedKeys) {
+                    namesLength = Math.min(buffer.getInt(SHARED_NAMES_LENGTH_OFFSET),
+                            nameBytes.length);
+                    for(int i = 0; i < namesLength; i++) {
+                        nameBytes[i] = buffer.get(SHARED_BITS_OFFSET + words * 16 + i);
+                    }
+                }
+                VarHandle.acquireFence();
+                consistent =
+                        (long) SHARED_LONG.getOpaque(buffer, SHARED_SEQUENCE_OFFSET) == before;
+            }
+            if(!consistent) {
+                return false;
+            }
+            x = newX;
+            y = newY;
+            wheel = newWheel;
+            System.arraycopy(pressedRead, 0, pressed, 0, words);
+            System.arraycopy(clickedRead, 0, clicked, 0, words);
+            keyCount = newCount;
+            if(keyCount != namedKeys) {
+                names = new String(nameBytes, 0, namesLength, StandardCharsets.UTF_8).split("\n");
+                namedKeys = keyCount;
+            }
+            boolean changed = newFrame != frame;
+            frame = newFrame;
+            return changed;
+        }
+
+        public long getFrame() {
+            return frame;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWheelRotation() {
+            return wheel;
+        }
+
+        public int getKeyCount() {
+            return keyCount;
+        }
+
+        public boolean isPressed(int id) {
+            return id >= 0 && id < keyCount && (pressed[id >> 6] & 1L << id) != 0;
+        }
+
+        public boolean isClicked(int id) {
+            return id >= 0 && id < keyCount && (clicked[id >> 6] & 1L << id) != 0;
+        }
+
+        /**
+         * Get the name of a Key
+         * @param id the id of the Key
+         * @return the name or {@code null} if it is unknown
+         */
+        public String getKeyName(int id) {
+            return id >= 0 && id < names.length && id < keyCount ? names[id] : null;
+        }
+
+        /**
+         * Get the id of a Key
+         * @param name the name of the Key
+         * @return the id or -1 if there is no Key with that name
+         */
+        public int getKeyId(String name) {
+            for(int id = 0; id < names.length && id < keyCount; id++) {
+                if(names[id].equals(name)) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+
+    }
+
     private class InputtableCreator implements AnyInput {
         private final Key key;
 
@@ -0,0 +1,182 @@
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.event.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * InputLoopback checks that frames written by {@link Input#writeFrame(ByteBuffer)} reproduce the
+ * state of the writing Input when read by {@link Input#readFrame(ByteBuffer)}
+ * <p>
+ *     Random key, mouse and wheel events are dispatched to a local Input, every frame is written
+ *     into a buffer and read into a remote Input with the same Keys. After every frame the
+ *     pressed, clicked and released state, the click and repeat counts and the repeating of
+ *     every Key, the mouse position and the wheel rotation of both have to match. Some frames
+ *     press and release a Key, sometimes pressing it again, within the frame and some are first
+ *     written to a buffer which is too small.
+ * </p>
+ * <p>
+ *     Usage: {@code java InputLoopback [frames] [keys]}
+ * </p>
+ * @author davidot
+ */
+public class InputLoopback {
+
+    private static final int FIRST_KEY_CODE = 1000;
+
+    private final Component component = new Component() {
+    };
+    private final Input local = new Input(null);
+    private final Input remote = new Input(null);
+    private final int keyCount;
+    private final Random random = new Random(1);
+    private final boolean[] down;
+    private long when;
+
+    private InputLoopback(int keyCount) {
+        this.keyCount = keyCount;
+        down = new boolean[keyCount];
+        for(int i = 0; i < keyCount; i++) {
+            String inputs = Input.KEY_TYPE_CHAR + String.valueOf(FIRST_KEY_CODE + i);
+            local.getOrCreateKey("loop" + i, inputs).setRepeatRate(i % 4);
+            remote.getOrCreateKey("loop" + i, inputs).setRepeatRate(i % 4);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.exit(new InputLoopback(keys).run(frames) ? 0 : 1);
+    }
+
+    private boolean run(int frames) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        long bytes = 0;
+        int overflows = 0;
+        for(int frame = 0; frame < frames; frame++) {
+            int events = random.nextInt(4);
+            for(int i = 0; i < events; i++) {
+                randomEvent();
+            }
+            if(frame % 7 == 0) {
+                //press and release within one frame, maybe pressing it again
+                int key = random.nextInt(keyCount);
+                if(!down[key]) {
+                    key(key, true);
+                    key(key, false);
+                    if(random.nextBoolean()) {
+                        key(key, true);
+                    }
+                }
+            }
+            local.tick();
+            buffer.clear();
+            if(frame % 13 == 0) {
+                //try a small buffer first, a frame which does not fit must leave nothing behind
+                buffer.limit(2);
+                try {
+                    local.writeFrame(buffer);
+                } catch(BufferOverflowException e) {
+                    if(buffer.position() != 0) {
+                        return fail(frame, buffer.position() + " bytes written before overflow");
+                    }
+                    overflows++;
+                    buffer.limit(buffer.capacity());
+                    local.writeFrame(buffer);
+                }
+            } else {
+                local.writeFrame(buffer);
+            }
+            bytes += buffer.position();
+            buffer.flip();
+            remote.readFrame(buffer);
+            if(buffer.hasRemaining()) {
+                return fail(frame, buffer.remaining() + " bytes left in the frame");
+            }
+            String error = compare();
+            if(error != null) {
+                return fail(frame, error);
+            }
+        }
+        System.out.println(String.format("%d frames, %d keys, %.2f bytes per frame, %d overflows",
+                frames, keyCount, (double) bytes / frames, overflows));
+        System.out.println("PASS");
+        return true;
+    }
+
+    private void randomEvent() {
+        int kind = random.nextInt(8);
+        when++;
+        if(kind < 5) {
+            int key = random.nextInt(keyCount);
+            //a held key sometimes gets a repeated press from the system
+            key(key, !down[key] || random.nextInt(3) == 0);
+        } else if(kind < 7) {
+            local.mouseMoved(new MouseEvent(component, MouseEvent.MOUSE_MOVED, when, 0,
+                    random.nextInt(4000) - 1000, random.nextInt(3000) - 1000, 0, false));
+        } else {
+            local.mouseWheelMoved(new MouseWheelEvent(component, MouseEvent.MOUSE_WHEEL, when,
+                    0, 0, 0, 0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, 3,
+                    random.nextInt(7) - 3));
+        }
+    }
+
+    private void key(int key, boolean state) {
+        down[key] = state;
+        KeyEvent event = new KeyEvent(component,
+                state ? KeyEvent.KEY_PRESSED : KeyEvent.KEY_RELEASED, when, 0,
+                FIRST_KEY_CODE + key, KeyEvent.CHAR_UNDEFINED);
+        if(state) {
+            local.keyPressed(event);
+        } else {
+            local.keyReleased(event);
+        }
+    }
+
+    private String compare() {
+        for(int i = 0; i < keyCount; i++) {
+            Input.Key expected = local.getKey("loop" + i);
+            Input.Key actual = remote.getKey("loop" + i);
+            if(expected.isPressed() != actual.isPressed()) {
+                return "pressed of loop" + i + " is " + actual.isPressed();
+            }
+            if(expected.isClicked() != actual.isClicked()) {
+                return "clicked of loop" + i + " is " + actual.isClicked();
+            }
+            if(expected.isReleased() != actual.isReleased()) {
+                return "released of loop" + i + " is " + actual.isReleased();
+            }
+            if(expected.getClicks() != actual.getClicks()) {
+                return "clicks of loop" + i + " is " + actual.getClicks();
+            }
+            if(expected.getRepeats() != actual.getRepeats()) {
+                return "repeats of loop" + i + " is " + actual.getRepeats();
+            }
+            if(expected.isRepeated() != actual.isRepeated()) {
+                return "repeated of loop" + i + " is " + actual.isRepeated();
+            }
+        }
+        Point expected = local.getPoint();
+        Point actual = remote.getPoint();
+        if(!expected.equals(actual)) {
+            return "point is " + actual + " instead of " + expected;
+        }
+        if(local.getWheelRotation() != remote.getWheelRotation()) {
+            return "wheel rotation is " + remote.getWheelRotation() + " instead of " +
+                    local.getWheelRotation();
+        }
+        if(local.getFrame() != remote.getFrame()) {
+            return "frame is " + remote.getFrame() + " instead of " + local.getFrame();
+        }
+        return null;
+    }
+
+    private static boolean fail(int frame, String error) {
+        System.out.println("Frame " + frame + ": " + error);
+        System.out.println("FAIL");
+        return false;
+    }
+
+}
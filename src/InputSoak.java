@@ -0,0 +1,379 @@
+import java.awt.Component;
+import java.awt.event.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * InputSoak is a headless load and soak test for {@link Input}
+ * <p>
+ *     Producer threads generate synthetic key, mouse button, motion and wheel events which are
+ *     dispatched to an Input by a single dispatch thread, standing in for the event dispatch
+ *     thread, while a consumer thread keeps calling {@link Input#tick()}. Afterwards an oracle
+ *     checks that every press was clicked exactly once, that the wheel rotation adds up and that
+ *     every toggle reached the KeyToggleListeners. It reports the throughput and the latency from
+ *     dispatching a press to a tick seeing it clicked.
+ * </p>
+ * <p>
+ *     Usage: {@code java InputSoak [producers] [seconds] [keysPerProducer] [direct]}
+ *     With {@code direct} the producers call the Input themselves instead of going through the
+ *     dispatch thread.
+ * </p>
+ * @author davidot
+ */
+public class InputSoak {
+
+    private static final int FIRST_KEY_CODE = 1000;
+    private static final int QUEUE_SIZE = 1 << 16;
+    private static final int LATENCY_SAMPLES = 1 << 20;
+
+    private final int producers;
+    private final long duration;
+    private final int keysPerProducer;
+    private final boolean direct;
+
+    private final Component component = new Component() {
+    };
+    private final Input input = new Input(null);
+    private final Input.Key[] keys;
+    private final BlockingQueue<InputEvent> queue = new ArrayBlockingQueue<InputEvent>(QUEUE_SIZE);
+
+    private volatile boolean running = true;
+    private volatile boolean dispatchDone;
+
+    //produced by the producers, each producer only writes its own slots
+    private final long[] presses;
+    private final long[] mousePresses;
+    private final long[] wheelRotation;
+    private final long[] events;
+
+    //seen by the listeners on the dispatch thread
+    private final long[] toggles;
+
+    //seen by the consumer
+    private final long[] clicks;
+    private long clickedTicks;
+    private long lmbClicks;
+    private long wheelSeen;
+    private long ticks;
+    private long mismatches;
+    private final AtomicLongArray pressTime;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount;
+
+    private InputSoak(int producers, long duration, int keysPerProducer, boolean direct) {
+        this.producers = producers;
+        this.duration = duration;
+        this.keysPerProducer = keysPerProducer;
+        this.direct = direct;
+        int keyCount = producers * keysPerProducer;
+        keys = new Input.Key[keyCount];
+        presses = new long[keyCount];
+        toggles = new long[keyCount];
+        clicks = new long[keyCount];
+        pressTime = new AtomicLongArray(keyCount);
+        mousePresses = new long[producers];
+        wheelRotation = new long[producers];
+        events = new long[producers];
+        for(int i = 0; i < keyCount; i++) {
+            keys[i] = input.getOrCreateKey("soak" + i,
+                    Input.KEY_TYPE_CHAR + String.valueOf(FIRST_KEY_CODE + i));
+            final int id = i;
+            input.addKeyListener(new Input.KeyToggleListener() {
+                @Override
+                public boolean shouldConsume(boolean state) {
+                    return false;
+                }
+
+                @Override
+                public boolean onKeyToggle(boolean state) {
+                    toggles[id]++;
+                    return true;
+                }
+            }, keys[i]);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int keysPerProducer = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        boolean direct = args.length > 3 && args[3].equals("direct");
+        InputSoak soak =
+                new InputSoak(producers, TimeUnit.SECONDS.toNanos(seconds), keysPerProducer,
+                        direct);
+        System.exit(soak.run() ? 0 : 1);
+    }
+
+    private boolean run() throws InterruptedException {
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "soak-consumer");
+        Thread dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatchLoop();
+            }
+        }, "soak-dispatcher");
+        Thread[] producerThreads = new Thread[producers];
+        for(int i = 0; i < producers; i++) {
+            final int producer = i;
+            producerThreads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    produce(producer);
+                }
+            }, "soak-producer-" + i);
+        }
+
+        long start = System.nanoTime();
+        consumer.start();
+        if(!direct) {
+            dispatcher.start();
+        }
+        for(Thread thread : producerThreads) {
+            thread.start();
+        }
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(duration));
+        running = false;
+        for(Thread thread : producerThreads) {
+            thread.join();
+        }
+        if(direct) {
+            dispatchDone = true;
+        } else {
+            dispatcher.join();
+        }
+        consumer.join();
+        long elapsed = System.nanoTime() - start;
+        return report(elapsed);
+    }
+
+    private void produce(int producer) {
+        Random random = new Random(producer);
+        int firstKey = producer * keysPerProducer;
+        boolean[] down = new boolean[keysPerProducer];
+        boolean mouseDown = false;
+        long count = 0;
+        while(running) {
+            int kind = random.nextInt(16);
+            InputEvent event;
+            if(kind < 12 || producer != 0) {
+                int key = random.nextInt(keysPerProducer);
+                down[key] = !down[key];
+                if(down[key]) {
+                    presses[firstKey + key]++;
+                }
+                event = new KeyEvent(component,
+                        down[key] ? KeyEvent.KEY_PRESSED : KeyEvent.KEY_RELEASED,
+                        System.currentTimeMillis(), 0, FIRST_KEY_CODE + firstKey + key,
+                        KeyEvent.CHAR_UNDEFINED);
+            } else if(kind < 14) {
+                event = new MouseEvent(component, MouseEvent.MOUSE_MOVED,
+                        System.currentTimeMillis(), 0, random.nextInt(1920),
+                        random.nextInt(1080), 0, false);
+            } else if(kind < 15) {
+                mouseDown = !mouseDown;
+                if(mouseDown) {
+                    mousePresses[producer]++;
+                }
+                event = new MouseEvent(component,
+                        mouseDown ? MouseEvent.MOUSE_PRESSED : MouseEvent.MOUSE_RELEASED,
+                        System.currentTimeMillis(), 0, random.nextInt(1920),
+                        random.nextInt(1080), 1, false, MouseEvent.BUTTON1);
+            } else {
+                int rotation = random.nextInt(7) - 3;
+                wheelRotation[producer] += rotation;
+                event = new MouseWheelEvent(component, MouseEvent.MOUSE_WHEEL,
+                        System.currentTimeMillis(), 0, random.nextInt(1920),
+                        random.nextInt(1080), 0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, 3,
+                        rotation);
+            }
+            if(direct) {
+                dispatch(event);
+            } else {
+                try {
+                    queue.put(event);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            count++;
+        }
+        //leave everything released so the final state can be checked
+        for(int key = 0; key < keysPerProducer; key++) {
+            if(down[key]) {
+                InputEvent event = new KeyEvent(component, KeyEvent.KEY_RELEASED,
+                        System.currentTimeMillis(), 0, FIRST_KEY_CODE + firstKey + key,
+                        KeyEvent.CHAR_UNDEFINED);
+                if(direct) {
+                    dispatch(event);
+                } else {
+                    try {
+                        queue.put(event);
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                count++;
+            }
+        }
+        events[producer] = count;
+    }
+
+    private void dispatchLoop() {
+        List<InputEvent> batch = new ArrayList<InputEvent>(QUEUE_SIZE);
+        try {
+            while(true) {
+                InputEvent event = queue.poll(10, TimeUnit.MILLISECONDS);
+                if(event != null) {
+                    dispatch(event);
+                    queue.drainTo(batch);
+                    for(int i = 0, size = batch.size(); i < size; i++) {
+                        dispatch(batch.get(i));
+                    }
+                    batch.clear();
+                } else if(!running && queue.isEmpty()) {
+                    break;
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatchDone = true;
+    }
+
+    private void dispatch(InputEvent event) {
+        switch(event.getID()) {
+            case KeyEvent.KEY_PRESSED:
+                pressTime.set(((KeyEvent) event).getKeyCode() - FIRST_KEY_CODE,
+                        System.nanoTime());
+                input.keyPressed((KeyEvent) event);
+                break;
+            case KeyEvent.KEY_RELEASED:
+                input.keyReleased((KeyEvent) event);
+                break;
+            case MouseEvent.MOUSE_MOVED:
+                input.mouseMoved((MouseEvent) event);
+                break;
+            case MouseEvent.MOUSE_PRESSED:
+                input.mousePressed((MouseEvent) event);
+                break;
+            case MouseEvent.MOUSE_RELEASED:
+                input.mouseReleased((MouseEvent) event);
+                break;
+            case MouseEvent.MOUSE_WHEEL:
+                input.mouseWheelMoved((MouseWheelEvent) event);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected event:" + event);
+        }
+    }
+
+    private void consume() {
+        boolean last = false;
+        while(true) {
+            //one more tick after the dispatcher is done to see the last events
+            if(dispatchDone) {
+                last = true;
+            }
+            input.tick();
+            ticks++;
+            long now = System.nanoTime();
+            for(int i = 0; i < keys.length; i++) {
+                Input.Key key = keys[i];
+                int count = key.getClicks();
+                if(key.isClicked() != count > 0) {
+                    mismatches++;
+                }
+                if(count > 0) {
+                    clicks[i] += count;
+                    clickedTicks++;
+                    latencies[(int) (latencyCount++ & (LATENCY_SAMPLES - 1))] =
+                            now - pressTime.get(i);
+                }
+            }
+            lmbClicks += input.getLeftMouseButton().getClicks();
+            wheelSeen += input.getWheelRotation();
+            if(last) {
+                break;
+            }
+            Thread.yield();
+        }
+    }
+
+    private boolean report(long elapsed) {
+        long totalEvents = sum(events);
+        long totalPresses = sum(presses);
+        boolean ok = true;
+
+        for(int i = 0; i < keys.length; i++) {
+            if(clicks[i] != presses[i]) {
+                System.out.println("Key " + i + ": " + presses[i] + " presses but " + clicks[i] +
+                        " clicks");
+                ok = false;
+            }
+            if(toggles[i] != presses[i] * 2) {
+                System.out.println("Key " + i + ": " + presses[i] * 2 + " toggles but " +
+                        toggles[i] + " listener calls");
+                ok = false;
+            }
+            if(keys[i].isPressed()) {
+                System.out.println("Key " + i + " is still pressed after release");
+                ok = false;
+            }
+        }
+        if(mismatches > 0) {
+            System.out.println(mismatches + " ticks where isClicked() did not match getClicks()");
+            ok = false;
+        }
+        if(lmbClicks != sum(mousePresses)) {
+            System.out.println("Mouse: " + sum(mousePresses) + " presses but " + lmbClicks +
+                    " clicks");
+            ok = false;
+        }
+        if(wheelSeen != sum(wheelRotation)) {
+            System.out.println("Wheel: rotated " + sum(wheelRotation) + " but saw " + wheelSeen);
+            ok = false;
+        }
+
+        double seconds = elapsed / 1e9;
+        System.out.println(String.format("%d producers%s, %d keys, %.1f s", producers,
+                direct ? " (direct)" : "", keys.length, seconds));
+        System.out.println(String.format("events: %d (%.0f/s), presses: %d, ticks: %d (%.0f/s), " +
+                        "clicked ticks: %d", totalEvents, totalEvents / seconds, totalPresses,
+                ticks, ticks / seconds, clickedTicks));
+        int samples = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+        if(samples > 0) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            System.out.println(String.format("press to click latency us: p50 %.1f p90 %.1f " +
+                            "p99 %.1f p99.9 %.1f max %.1f", percentile(sorted, 0.5),
+                    percentile(sorted, 0.9), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted[samples - 1] / 1e3));
+        }
+        System.out.println(ok ? "PASS" : "FAIL");
+        return ok;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) (sorted.length * fraction))] / 1e3;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for(long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+}